@@ -0,0 +1,117 @@
+package benchmarks;
+
+import common.CellValueFormatter;
+import common.ExcelDataTable;
+import common.ExcelUtility;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput of an open workbook: random cell reads and column lookups through {@link ExcelUtility}, the
+ * same lookups on its cached {@link ExcelDataTable}, and {@link CellValueFormatter#readCellValue}, which
+ * BaseTest.readCellValue delegates to.
+ * <p>
+ * The sheet sizes are the parameters of the subclasses: {@link ExcelReadBenchmark} for the sizes measured by
+ * default and {@link ExcelReadLargeBenchmark} for the 1M row sheet, which only runs on demand.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+abstract class AbstractExcelReadBenchmark {
+
+    private static final int LOOKUPS = 4096;
+
+    private ExcelUtility excel;
+    private ExcelDataTable table;
+    private XSSFWorkbook workbook;
+    private int[] rowNums;
+    private int[] columns;
+    private String[] columnNames;
+    private int next;
+
+    /**
+     * Number of data rows of the measured sheet.
+     */
+    abstract int rows();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int rows = rows();
+        String path = BenchmarkData.workbook(rows).toString();
+        excel = new ExcelUtility(path);
+        excel.setSheet(BenchmarkData.SHEET);
+        table = excel.getTable();
+        try (InputStream in = new FileInputStream(path)) {
+            workbook = new XSSFWorkbook(in);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        rowNums = new int[LOOKUPS];
+        columns = new int[LOOKUPS];
+        columnNames = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            rowNums[i] = random.nextInt(rows);
+            columns[i] = random.nextInt(BenchmarkData.HEADERS.length);
+            columnNames[i] = BenchmarkData.HEADERS[columns[i]];
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        excel.close();
+        workbook.close();
+    }
+
+    private int nextLookup() {
+        next = (next + 1) & (LOOKUPS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public String readDataRandom() {
+        int i = nextLookup();
+        return excel.readData(rowNums[i] + 1, columns[i]);
+    }
+
+    @Benchmark
+    public String getValueFromColumn() {
+        int i = nextLookup();
+        return excel.getValueFromColumn(rowNums[i], columnNames[i]);
+    }
+
+    @Benchmark
+    public String tableGetByColumnName() {
+        int i = nextLookup();
+        return excel.getTable().get(rowNums[i], columnNames[i]);
+    }
+
+    @Benchmark
+    public String tableGetByIndex() {
+        int i = nextLookup();
+        return table.get(rowNums[i], columns[i]);
+    }
+
+    @Benchmark
+    public void readCellValueRow(Blackhole blackhole) {
+        Row row = workbook.getSheet(BenchmarkData.SHEET).getRow(rowNums[nextLookup()] + 1);
+        for (int column = 0; column < BenchmarkData.HEADERS.length; column++) {
+            blackhole.consume(CellValueFormatter.readCellValue(row.getCell(column)));
+        }
+    }
+}
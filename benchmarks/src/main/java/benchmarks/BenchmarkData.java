@@ -0,0 +1,153 @@
+package benchmarks;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generated input data of the benchmarks.
+ * <p>
+ * Workbooks hold a "LoginData" sheet with the columns of {@link #HEADERS} and are generated once per row count
+ * into the "benchmark.dir" system property directory (default target/benchmark-data), so repeated runs and
+ * forks reuse them.
+ */
+final class BenchmarkData {
+
+    static final String SHEET = "LoginData";
+    static final String[] HEADERS = {"Username", "Password", "Email", "Phone", "Status"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Get a workbook with the given number of data rows, generating it on first use.
+     *
+     * @param rows The number of data rows below the header row.
+     * @return The path of the workbook.
+     */
+    static synchronized Path workbook(int rows) {
+        Path file = directory().resolve("LoginData-" + rows + ".xlsx");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "LoginData", ".tmp");
+            SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                Sheet sheet = workbook.createSheet(SHEET);
+                Row header = sheet.createRow(0);
+                for (int column = 0; column < HEADERS.length; column++) {
+                    header.createCell(column).setCellValue(HEADERS[column]);
+                }
+                for (int rowNum = 1; rowNum <= rows; rowNum++) {
+                    String[] values = row(rowNum);
+                    Row row = sheet.createRow(rowNum);
+                    for (int column = 0; column < values.length; column++) {
+                        row.createCell(column).setCellValue(values[column]);
+                    }
+                }
+                workbook.write(out);
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Not able to generate the workbook " + file, e);
+        }
+    }
+
+    /**
+     * Copy a generated workbook to a new temporary file, e.g. for benchmarks that write to it.
+     *
+     * @param rows The number of data rows below the header row.
+     * @return The path of the copy.
+     */
+    static Path workbookCopy(int rows) {
+        Path workbook = workbook(rows);
+        try {
+            Path copy = Files.createTempFile(workbook.getParent(), "LoginData-" + rows + "-", ".xlsx");
+            return Files.copy(workbook, copy, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the values of a generated data row.
+     *
+     * @param rowNum The 1-based row number.
+     * @return The values in the column order of {@link #HEADERS}.
+     */
+    static String[] row(int rowNum) {
+        return new String[]{"user" + rowNum, "Pass@" + (rowNum * 7919 % 100000), "user" + rowNum + "@example.com",
+                String.valueOf(9000000000L + rowNum), rowNum % 3 == 0 ? "Locked" : "Active"};
+    }
+
+    /**
+     * Create a synthetic screenshot. The noise keeps PNG compression from shrinking it far below a real page.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     * @param seed   The seed of the noise, equal seeds give equal images.
+     * @return The PNG bytes.
+     */
+    static byte[] png(int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width, height);
+        Random random = new Random(seed);
+        for (int block = 0; block < width * height / 400; block++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillRect(random.nextInt(width), random.nextInt(height), 4 + random.nextInt(60), 4 + random.nextInt(16));
+        }
+        graphics.dispose();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Path directory() {
+        return Paths.get(System.getProperty("benchmark.dir", Paths.get("target", "benchmark-data").toString()))
+                .toAbsolutePath();
+    }
+
+    static void deleteRecursively(Path directory) {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import common.ExcelUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append throughput of {@link ExcelUtility#writeData} and {@link ExcelUtility#writeSingleValues} on a copy of a
+ * generated workbook.
+ * <p>
+ * "flushEveryWrites" is passed to {@link ExcelUtility#setBufferedWrites}: 1 saves the workbook after every
+ * append, as the utility does by default, larger values measure buffered appends. Each iteration starts from a
+ * fresh copy; the final save on close is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExcelAppendBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"1", "1000"})
+    public int flushEveryWrites;
+
+    private Path copy;
+    private ExcelUtility excel;
+    private int appended;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        copy = BenchmarkData.workbookCopy(rows);
+        excel = new ExcelUtility(copy.toString());
+        excel.setSheet(BenchmarkData.SHEET);
+        excel.setBufferedWrites(flushEveryWrites, 0);
+        appended = rows;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        excel.close();
+        Files.deleteIfExists(copy);
+    }
+
+    @Benchmark
+    public void writeData() {
+        excel.writeData(0, BenchmarkData.row(++appended), "LIGHT_GREEN");
+    }
+
+    @Benchmark
+    public void writeSingleValues() {
+        excel.writeSingleValues(0, "user" + ++appended, "LIGHT_GREEN");
+    }
+}
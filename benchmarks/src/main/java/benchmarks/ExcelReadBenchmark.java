@@ -0,0 +1,23 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Read throughput of an open workbook up to 100k rows, see {@link AbstractExcelReadBenchmark}. The 1M row
+ * sheet is measured by {@link ExcelReadLargeBenchmark}.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExcelReadBenchmark extends AbstractExcelReadBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    @Override
+    int rows() {
+        return rows;
+    }
+}
@@ -0,0 +1,25 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Read throughput of an open workbook of 1M rows, see {@link AbstractExcelReadBenchmark}. ExcelUtility keeps
+ * the whole workbook in memory, so the fork gets a 16 GB heap and generating the workbook takes a few
+ * minutes. {@link BenchmarkRunner} leaves this benchmark out unless it is named on the command line:
+ * <pre>java -jar target/benchmarks.jar ExcelReadLargeBenchmark</pre>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ExcelReadLargeBenchmark extends AbstractExcelReadBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Override
+    int rows() {
+        return rows;
+    }
+}
@@ -0,0 +1,118 @@
+package benchmarks;
+
+import common.ScreenshotStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of persisting a captured screenshot: a plain file write as the baseline, a new and a repeated image in
+ * the {@link ScreenshotStore}, and a new image stored as a downscaled JPEG.
+ * <p>
+ * The synthetic PNGs are noise of the given viewport size; "distinct" of them are cycled through, and the new
+ * images get a unique trailer so the store has to hash, write and link each one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScreenshotBenchmark {
+
+    @Param({"800x600", "1920x1080"})
+    public String viewport;
+
+    @Param({"64"})
+    public int distinct;
+
+    private byte[][] pngs;
+    private Path directory;
+    private ScreenshotStore pngStore;
+    private ScreenshotStore jpegStore;
+    private int next;
+    private long stored;
+
+    @Setup(Level.Trial)
+    public void createImages() {
+        String[] size = viewport.split("x");
+        pngs = new byte[distinct][];
+        for (int i = 0; i < distinct; i++) {
+            pngs[i] = BenchmarkData.png(Integer.parseInt(size[0]), Integer.parseInt(size[1]), i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        Files.createDirectories(BenchmarkData.directory());
+        directory = Files.createTempDirectory(BenchmarkData.directory(), "screenshots");
+        pngStore = new ScreenshotStore(directory.resolve("png"), Long.MAX_VALUE, 1.0, "png", 0.8f);
+        jpegStore = new ScreenshotStore(directory.resolve("jpg"), Long.MAX_VALUE, 0.5, "jpg", 0.8f);
+        Files.createDirectories(directory.resolve("plain"));
+        pngStore.store(pngs[0], "repeated");
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        BenchmarkData.deleteRecursively(directory);
+    }
+
+    private byte[] nextImage() {
+        next = (next + 1) % distinct;
+        return pngs[next];
+    }
+
+    @Benchmark
+    public Path writeFile() throws IOException {
+        return Files.write(directory.resolve("plain").resolve("screenshot" + next + ".png"), nextImage());
+    }
+
+    @Benchmark
+    public Path storeNewPng() {
+        return pngStore.store(unique(nextImage()), "screenshot" + next);
+    }
+
+    @Benchmark
+    public Path storeRepeatedPng() {
+        return pngStore.store(pngs[0], "repeated" + nextImageIndex());
+    }
+
+    @Benchmark
+    public Path storeNewScaledJpeg() {
+        return jpegStore.store(unique(nextImage()), "screenshot" + next);
+    }
+
+    /**
+     * Copy an image with a counter appended after its end chunk, which decoders ignore, so the store sees an
+     * image it has not stored before. The copy is part of the measured time.
+     */
+    private byte[] unique(byte[] png) {
+        byte[] copy = Arrays.copyOf(png, png.length + Long.BYTES);
+        long counter = ++stored;
+        for (int i = 0; i < Long.BYTES; i++) {
+            copy[png.length + i] = (byte) (counter >>> (8 * i));
+        }
+        return copy;
+    }
+
+    private int nextImageIndex() {
+        next = (next + 1) % distinct;
+        return next;
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import common.ExcelDataTable;
+import common.TestDataCache;
+import common.TestDataSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading a test data sheet the ways the suite does: streaming the workbook
+ * ({@link ExcelDataTable#load}), reading its compiled snapshot ({@link TestDataSnapshot#load}) and the lookup
+ * BaseTest.loadTestData makes on every test, a {@link TestDataCache} hit followed by the first row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TestDataLoadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private String path;
+    private TestDataCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        path = BenchmarkData.workbook(rows).toString();
+        TestDataSnapshot.compile(path, BenchmarkData.SHEET);
+        cache = new TestDataCache(Long.MAX_VALUE);
+        cache.get(path, BenchmarkData.SHEET);
+    }
+
+    @Benchmark
+    public ExcelDataTable streamWorkbook() {
+        return ExcelDataTable.load(path, BenchmarkData.SHEET);
+    }
+
+    @Benchmark
+    public ExcelDataTable readSnapshot() {
+        return TestDataSnapshot.load(path, BenchmarkData.SHEET);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Map<String, String> loadTestDataCached() {
+        return cache.get(path, BenchmarkData.SHEET).getRow(0);
+    }
+}
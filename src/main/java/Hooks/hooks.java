@@ -3,7 +3,15 @@ package Hooks;
 
 import base.BasePage;
 import base.BaseTest;
+import base.DriverManager;
+import common.PageChangeDetector;
+import common.ScreenshotPipeline;
+import common.ScreenshotPolicy;
+import common.ScreenshotRingBuffer;
+import common.ScreenshotStore;
+import io.cucumber.java.After;
 import io.cucumber.java.AfterStep;
+import io.cucumber.java.Before;
 import io.cucumber.java.Scenario;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
@@ -12,6 +20,23 @@ import org.openqa.selenium.WebDriver;
 
 public class hooks extends BasePage{
 
+    private static final ScreenshotPolicy POLICY = ScreenshotPolicy.fromSystemProperties();
+    private static final long BUFFER_MAX_BYTES = Long.getLong("screenshot.buffer.maxBytes", 32L * 1024 * 1024);
+    private static final boolean SKIP_UNCHANGED = Boolean.parseBoolean(System.getProperty("screenshot.skipUnchanged", "true"));
+    private static final boolean EMBED_SCREENSHOTS = Boolean.parseBoolean(System.getProperty("screenshot.report.embed", "false"));
+
+    private ScreenshotPipeline.Batch screenshots;
+    private ScreenshotRingBuffer recentScreenshots;
+    private final PageChangeDetector pageChanges = new PageChangeDetector();
+    private boolean failureCaptured = false;
+
+    /**
+     * Constructor used by Cucumber; resolves the WebDriver of the scenario thread from the driver registry.
+     */
+    public hooks() {
+        super();
+    }
+
     /**
      * Constructor to initialize the BasePage with WebDriver instance.
      *
@@ -21,15 +46,93 @@ public class hooks extends BasePage{
         super(driver);
     }
 
+    /**
+     * Leases a browser for the scenario from the suite's browser pool and registers it for the scenario thread,
+     * starting the suite first if this is the first scenario. The browser and environment are taken from the
+     * "browser" (default chrome) and "env" (default Dev) system properties.
+     */
+    @Before(order = 0)
+    public void leaseBrowser() {
+        BaseTest.startSuite(System.getProperty("browser", "chrome"), System.getProperty("env", "Dev"));
+        BaseTest.leaseBrowser();
+    }
+
+    /**
+     * Returns the browser of the scenario to the pool once the other After hooks ran.
+     */
+    @After(order = 0)
+    public void releaseBrowser() {
+        BaseTest.releaseBrowser();
+    }
+
+    /**
+     * Captures the page after a step according to the "screenshot.policy" system property and hands the
+     * captures that should be kept to the screenshot pipeline. Steps that left the page unchanged are not
+     * captured again, and a failed step reuses the latest capture for its failure attachment when the page
+     * did not change.
+     *
+     * @param scenario The running scenario
+     */
     @AfterStep
     public void takeScreenShot(Scenario scenario) {
-        byte[] screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-        scenario.attach(screenshot, "image/png", scenario.getName());
+        if (!DriverManager.hasDriver()) {
+            return;
+        }
+        if (screenshots == null) {
+            screenshots = ScreenshotPipeline.newBatch();
+        }
+        boolean failed = scenario.isFailed();
+        if (failureCaptured || (POLICY.getMode() == ScreenshotPolicy.Mode.ON_FAILURE && !failed)) {
+            return;
+        }
+        boolean changed = pageChanges.hasChanged(getDriver()) || !SKIP_UNCHANGED;
+
+        if (POLICY.getMode() == ScreenshotPolicy.Mode.LAST_N) {
+            if (recentScreenshots == null) {
+                recentScreenshots = new ScreenshotRingBuffer(POLICY.getLastN(), BUFFER_MAX_BYTES);
+            }
+            if (changed || recentScreenshots.isEmpty()) {
+                recentScreenshots.add(scenario.getName(), capture());
+            }
+            if (failed) {
+                for (ScreenshotRingBuffer.Entry entry : recentScreenshots.drain()) {
+                    screenshots.submit(entry.getBase64Png(), entry.getName());
+                }
+            }
+        } else if (changed || screenshots.isEmpty()) {
+            screenshots.submit(capture(), scenario.getName());
+        }
 
-        if (scenario.isFailed()) {
-            screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            scenario.attach(screenshot, "image/png", scenario.getName().replace(" ", "")+"failed.png");
+        if (failed) {
+            screenshots.reuseLast(scenario.getName().replace(" ", "")+"failed.png");
+            failureCaptured = true;
         }
     }
 
+    /**
+     * Waits for the screenshots of the scenario and adds them to the report in step order. The report links
+     * to the images in the {@link ScreenshotStore}; with the "screenshot.report.embed" system property set to
+     * true the images are attached to the report instead.
+     *
+     * @param scenario The finished scenario
+     */
+    @After
+    public void attachScreenShots(Scenario scenario) {
+        if (screenshots != null) {
+            screenshots.flush((name, capture) -> {
+                if (EMBED_SCREENSHOTS) {
+                    scenario.attach(capture.getPng(), "image/png", name);
+                } else {
+                    String link = ScreenshotStore.getInstance().link(capture.getPath());
+                    scenario.log("<a href='" + link + "' target='_blank'><img src='" + link + "' alt='" + name.replace("'", "&#39;")
+                            + "' style='max-width:320px'/></a>");
+                }
+            });
+        }
+    }
+
+    private String capture() {
+        return ((TakesScreenshot) getDriver()).getScreenshotAs(OutputType.BASE64);
+    }
+
 }
@@ -16,6 +16,7 @@ public class homePage extends loginPage {
     }
 
     public void isHomePageDisplayed() {
+        waitForPageReady();
         String homePageTitle = getDriver().getTitle();
         assertEquals(homePageTitle, "Online Shopping site in India: Shop Online for Mobiles, Books, Watches, Shoes and More - Amazon.in");
     }
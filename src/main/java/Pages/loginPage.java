@@ -1,7 +1,9 @@
 package Pages;
 
 import base.BasePage;
+import base.SessionStateCache;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
 
@@ -14,7 +16,8 @@ public class loginPage extends BasePage {
     private final By emailContinueButton = By.id("continue");
     private final By passwordInput = By.id("ap_password");
     private final By signInSubmitButton = By.id("signInSubmit");
-    private final By welcomeMessage = By.id("nav-link-accountList-nav-line-1");
+    private static final String WELCOME_MESSAGE_ID = "nav-link-accountList-nav-line-1";
+    private final By welcomeMessage = By.id(WELCOME_MESSAGE_ID);
     private final By errorMessage = By.id("auth-error-message-box");
 
 
@@ -38,6 +41,50 @@ public class loginPage extends BasePage {
         clickElement(signInSubmitButton);
     }
 
+    /**
+     * Signs the user in. A session of the user saved by an earlier sign-in on the same environment is
+     * restored from the {@link SessionStateCache}; otherwise, or when the restored session is no longer
+     * signed in, the user signs in through the sign-in page and the new session is saved.
+     * The browser is expected to show the sign-in page.
+     *
+     * @param email    Email or mobile number of the user
+     * @param password Password of the user
+     * @return true if the user is signed in
+     * @throws InterruptedException if the thread is interrupted while entering the email
+     */
+    public boolean login(String email, String password) throws InterruptedException {
+        SessionStateCache sessions = SessionStateCache.getInstance();
+        String environment = SessionStateCache.originOf(getDriver().getCurrentUrl());
+        if (sessions.restore(getDriver(), email, environment, driver -> isSignedIn())) {
+            return true;
+        }
+        long started = System.nanoTime();
+        enterEmail(email);
+        clickContinue();
+        enterPassword(password);
+        clickSignInSubmit();
+        waitForPageReady();
+        if (!isSignedIn()) {
+            return false;
+        }
+        sessions.capture(getDriver(), email, environment, started);
+        return true;
+    }
+
+    /**
+     * Checks in one script call, without waiting, that the welcome message greets a signed-in user.
+     * Signed-out pages greet with "Hello, sign in".
+     *
+     * @return true if the welcome message is shown for a signed-in user
+     */
+    private boolean isSignedIn() {
+        Object signedIn = ((JavascriptExecutor) getDriver()).executeScript(
+                "var e = document.getElementById(arguments[0]);"
+                        + "return !!e && e.getClientRects().length > 0 && !/sign in/i.test(e.textContent);",
+                WELCOME_MESSAGE_ID);
+        return Boolean.TRUE.equals(signedIn);
+    }
+
     public boolean isWelcomeMessageDisplayed() {
         boolean isDisplayed = false;
         try {
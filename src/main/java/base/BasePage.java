@@ -4,14 +4,18 @@ import java.io.File;
 import java.time.Duration;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
+import common.ActionMetrics;
+import common.RoundTripCounter;
+import common.SeleniumHighlighterUtility;
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.interactions.Actions;
-import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.Select;
 import org.zeroturnaround.zip.ZipUtil;
 
@@ -19,12 +23,27 @@ public class BasePage {
 
     protected WebDriver driver = null;
 
-    WebDriverWait wait;
-    JavascriptExecutor js;
+    private static final String HIGHLIGHT_MODE = System.getProperty("highlight.mode", "inline").toLowerCase();
+    private static final String HIGHLIGHT_SCRIPT = "arguments[0].style.border='3px solid red'";
+    private static final String VISIBLE_AND_HIGHLIGHT_SCRIPT =
+            "var e = arguments[0], s = window.getComputedStyle(e);"
+                    + "var visible = e.getClientRects().length > 0 && s.visibility !== 'hidden' && s.opacity !== '0';"
+                    + "if (visible) { e.style.border = '3px solid red'; }"
+                    + "return visible;";
+
+    private DriverSession pageSession;
     Duration explicitWait = Duration.ofSeconds(30);
 
+    /**
+     * Constructor to initialize the BasePage with the WebDriver registered for the current thread.
+     */
+    public BasePage() {
+        this(null);
+    }
+
     /**
      * Constructor to initialize the BasePage with WebDriver instance.
+     * When the driver is null, the page resolves the driver of the calling thread from {@link DriverManager}.
      *
      * @param driver WebDriver instance
      */
@@ -38,31 +57,153 @@ public class BasePage {
      * @return WebDriver instance
      */
     public WebDriver getDriver() {
-        return driver;
+        return session().getDriver();
+    }
+
+    /**
+     * Returns the session state of the driver this page works with.
+     * Pages built without a driver, or with the driver registered for the current thread, share the
+     * thread's session; a page built with any other driver keeps a session of its own.
+     *
+     * @return DriverSession of this page
+     */
+    protected DriverSession session() {
+        if (DriverManager.hasDriver()) {
+            DriverSession threadSession = DriverManager.getSession();
+            if (driver == null || threadSession.getDriver() == driver) {
+                return threadSession;
+            }
+        }
+        if (driver == null) {
+            return DriverManager.getSession();
+        }
+        if (pageSession == null) {
+            pageSession = new DriverSession(driver);
+        }
+        return pageSession;
     }
 
     /**
      * Finds and returns the WebElement based on the provided By locator.
      * Highlights the element by adding a red border.
+     * <p>
+     * The element is looked up once. How it is highlighted follows the "highlight.mode" system property:
+     * "inline" (default) checks visibility and sets the border in the same script call, "separate" uses
+     * WebDriver's visibility check followed by a second script call, and "off" skips the highlight.
+     * Performance mode ({@link SeleniumHighlighterUtility#isPerformanceMode()}) skips the highlight as well.
+     * Simple XPath locators are looked up through their By.id or By.cssSelector equivalent, see
+     * {@link LocatorRegistry}.
      *
      * @param by By locator to find the element
      * @return WebElement found by the locator
      */
     protected WebElement getElement(By by) {
-        wait = new WebDriverWait(driver, explicitWait);
-        js = (JavascriptExecutor) driver;
-        wait.until(ExpectedConditions.visibilityOfElementLocated(by));
-        js.executeScript("arguments[0].style.border='3px solid red'", driver.findElement(by));
-        return driver.findElement(by);
+        return instrumented("getElement", by, () -> {
+            DriverSession session = session();
+            switch (SeleniumHighlighterUtility.isPerformanceMode() ? "off" : HIGHLIGHT_MODE) {
+                case "off":
+                    return session.getWait(explicitWait).until(visible(by));
+                case "separate":
+                    WebElement element = session.getWait(explicitWait).until(visible(by));
+                    session.getJavascriptExecutor().executeScript(HIGHLIGHT_SCRIPT, element);
+                    return element;
+                default:
+                    return session.getWait(explicitWait).until(visibleAndHighlighted(by));
+            }
+        });
+    }
+
+    /**
+     * Runs a page action, recording its latency in {@link ActionMetrics} and its WebDriver commands in
+     * {@link RoundTripCounter}, also when it fails.
+     *
+     * @param action Name of the page action
+     * @param by     By locator the action works on
+     * @param body   The action itself
+     * @return The result of the action
+     */
+    private static <T> T instrumented(String action, By by, Supplier<T> body) {
+        long mark = RoundTripCounter.mark();
+        long started = ActionMetrics.begin();
+        try {
+            return body.get();
+        } finally {
+            ActionMetrics.end(action, by, started);
+            RoundTripCounter.record(action, mark);
+        }
+    }
+
+    private static void instrumented(String action, By by, Runnable body) {
+        instrumented(action, by, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Condition that looks the element up and checks that it is displayed, like
+     * ExpectedConditions.visibilityOfElementLocated.
+     *
+     * @param by By locator to find the element
+     * @return Condition returning the element once it is visible
+     */
+    private static ExpectedCondition<WebElement> visible(By by) {
+        return driver -> {
+            try {
+                WebElement element = findElement(driver, by);
+                return element.isDisplayed() ? element : null;
+            } catch (StaleElementReferenceException e) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Condition that looks the element up and, in one script call, checks that it is rendered and visible
+     * and adds the highlight border.
+     *
+     * @param by By locator to find the element
+     * @return Condition returning the element once it is visible
+     */
+    private static ExpectedCondition<WebElement> visibleAndHighlighted(By by) {
+        return driver -> {
+            try {
+                WebElement element = findElement(driver, by);
+                Object visible = ((JavascriptExecutor) driver).executeScript(VISIBLE_AND_HIGHLIGHT_SCRIPT, element);
+                return Boolean.TRUE.equals(visible) ? element : null;
+            } catch (StaleElementReferenceException e) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Sends one find command for the locator, through its {@link LocatorRegistry} equivalent, and records how
+     * long the lookup took.
+     *
+     * @param driver WebDriver instance to search
+     * @param by     By locator declared by the page object
+     * @return WebElement found by the locator
+     */
+    private static WebElement findElement(WebDriver driver, By by) {
+        By locator = LocatorRegistry.optimize(by);
+        long started = System.nanoTime();
+        try {
+            return driver.findElement(locator);
+        } finally {
+            LocatorRegistry.recordLookup(by, System.nanoTime() - started);
+        }
     }
 
     protected void insertText(By by, String value) {
-        getElement(by).sendKeys(value);
+        instrumented("insertText", by, () -> getElement(by).sendKeys(value));
     }
 
     protected void clearText(By by) {
-        WebElement element = getElement(by);
-        element.clear();
+        instrumented("clearText", by, () -> {
+            WebElement element = getElement(by);
+            element.clear();
+        });
     }
 
 
@@ -72,9 +213,12 @@ public class BasePage {
      * @param by By locator to find the element to be clicked
      */
     protected void clickElement(By by) {
-        WebElement element = getElement(by);
-        wait.until(ExpectedConditions.elementToBeClickable(element));
-        element.click();
+        instrumented("clickElement", by, () -> {
+            WebElement element = getElement(by);
+            // Visibility was checked while resolving the element, so only the enabled state is left to wait for
+            session().getWait(explicitWait).until(driver -> element.isEnabled());
+            element.click();
+        });
     }
 
     /**
@@ -83,8 +227,8 @@ public class BasePage {
      * @param windowIndex Index of the window to switch to
      */
     protected void switchToWindowByIndex(int windowIndex) {
-        Set<String> winHandlers = driver.getWindowHandles();
-        driver.switchTo().window(winHandlers.toArray()[windowIndex].toString());
+        Set<String> winHandlers = getDriver().getWindowHandles();
+        getDriver().switchTo().window(winHandlers.toArray()[windowIndex].toString());
     }
 
     /**
@@ -94,9 +238,11 @@ public class BasePage {
      * @param optionTitle Visible text of the option to be selected
      */
     protected void selectDropdownOptionByVisibleText(By by, String optionTitle) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.selectByVisibleText(optionTitle);
+        instrumented("selectDropdownOptionByVisibleText", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.selectByVisibleText(optionTitle);
+        });
     }
 
     /**
@@ -106,9 +252,11 @@ public class BasePage {
      * @param index Index of the option to be selected
      */
     protected void selectDropdownOptionByIndex(By by, int index) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.selectByIndex(index);
+        instrumented("selectDropdownOptionByIndex", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.selectByIndex(index);
+        });
     }
 
     /**
@@ -118,9 +266,11 @@ public class BasePage {
      * @param value Value of the option to be selected
      */
     protected void selectDropdownOptionByValue(By by, String value) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.selectByValue(value);
+        instrumented("selectDropdownOptionByValue", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.selectByValue(value);
+        });
     }
 
     /**
@@ -130,9 +280,11 @@ public class BasePage {
      * @param optionTitle Visible text of the option to be deselected
      */
     protected void deSelectDropdownOption(By by, String optionTitle) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.deselectByVisibleText(optionTitle);
+        instrumented("deSelectDropdownOption", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.deselectByVisibleText(optionTitle);
+        });
     }
 
     /**
@@ -142,9 +294,11 @@ public class BasePage {
      * @param index Index of the option to be deselected
      */
     protected void deselectDropdownOptionByIndex(By by, int index) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.deselectByIndex(index);
+        instrumented("deselectDropdownOptionByIndex", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.deselectByIndex(index);
+        });
     }
 
     /**
@@ -154,9 +308,11 @@ public class BasePage {
      * @param value Value of the option to be deselected
      */
     protected void deselectDropdownOptionByValue(By by, String value) {
-        WebElement element = getElement(by);
-        Select dropdown = new Select(element);
-        dropdown.deselectByValue(value);
+        instrumented("deselectDropdownOptionByValue", by, () -> {
+            WebElement element = getElement(by);
+            Select dropdown = new Select(element);
+            dropdown.deselectByValue(value);
+        });
     }
 
     /**
@@ -165,8 +321,10 @@ public class BasePage {
      * @param by By locator to find the element to be scrolled to
      */
     protected void scrollToElement(By by) {
-        WebElement element = getElement(by);
-        js.executeScript("arguments[0].scrollIntoView(true);", element);
+        instrumented("scrollToElement", by, () -> {
+            WebElement element = getElement(by);
+            session().getJavascriptExecutor().executeScript("arguments[0].scrollIntoView(true);", element);
+        });
     }
 
     /**
@@ -175,20 +333,22 @@ public class BasePage {
      * @param by The locator used to find the element.
      */
     protected void hoverToElement(By by) {
-        Actions actions = new Actions(driver);
-        WebElement element = getElement(by);
-        actions.moveToElement(element).perform();
+        instrumented("hoverToElement", by, () -> {
+            Actions actions = new Actions(getDriver());
+            WebElement element = getElement(by);
+            actions.moveToElement(element).perform();
+        });
     }
 
     /**
      * Waits until the specified element is visible on the page.
+     * The wait engine follows the "wait.engine" system property, see {@link DomWaitEngine}.
      *
      * @param timeInSeconds The maximum duration to wait for the element to be visible.
      * @param locator       The locator used to find the element.
      */
     protected void waitUntilVisibilityOfElement(Duration timeInSeconds, By locator) {
-        WebDriverWait wait = new WebDriverWait(driver, timeInSeconds);
-        wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
+        DomWaitEngine.await(session(), LocatorRegistry.optimize(locator), DomWaitEngine.Condition.VISIBLE, timeInSeconds);
     }
 
     /**
@@ -198,8 +358,7 @@ public class BasePage {
      * @param locator       The locator used to find the element.
      */
     protected void waitUntilElementToBeClickable(Duration timeInSeconds, By locator) {
-        WebDriverWait wait = new WebDriverWait(driver, timeInSeconds);
-        wait.until(ExpectedConditions.elementToBeClickable(locator));
+        DomWaitEngine.await(session(), LocatorRegistry.optimize(locator), DomWaitEngine.Condition.CLICKABLE, timeInSeconds);
     }
 
     /**
@@ -209,8 +368,17 @@ public class BasePage {
      * @param locator       The locator used to find the element.
      */
     protected void waitUntilElementToBeSelected(Duration timeInSeconds, By locator) {
-        WebDriverWait wait = new WebDriverWait(driver, timeInSeconds);
-        wait.until(ExpectedConditions.elementToBeSelected(locator));
+        DomWaitEngine.await(session(), LocatorRegistry.optimize(locator), DomWaitEngine.Condition.SELECTED, timeInSeconds);
+    }
+
+    /**
+     * Waits until the current page is ready: loaded, without network requests in flight and with a stable DOM.
+     * A page that is already ready costs a single script call, see {@link PageReadiness}.
+     *
+     * @return true if the page became ready, false if the readiness timeout expired first.
+     */
+    protected boolean waitForPageReady() {
+        return PageReadiness.forDriver(getDriver()).waitUntilReady();
     }
 
     /**
@@ -221,7 +389,7 @@ public class BasePage {
      * @param timeInSeconds The time to wait in seconds.
      */
     protected void setImplicitWait(int timeInSeconds) {
-        driver.manage().timeouts().implicitlyWait(Duration.ofSeconds(timeInSeconds));
+        getDriver().manage().timeouts().implicitlyWait(Duration.ofSeconds(timeInSeconds));
     }
 
     /**
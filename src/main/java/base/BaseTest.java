@@ -1,48 +1,82 @@
 package base;
 
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFCell;
-import org.apache.poi.xssf.usermodel.XSSFRow;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import common.ActionMetrics;
+import common.ExcelDataTable;
+import common.FixtureServer;
+import common.RoundTripCounter;
+import common.TestDataCache;
+import common.TraceRecorder;
 import org.openqa.selenium.WebDriver;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.firefox.FirefoxDriver;
 import org.testng.ITestResult;
 import org.testng.annotations.*;
 import org.testng.annotations.Optional;
 
-import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.IOException;
 import java.lang.reflect.Method;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class BaseTest {
 
-    protected WebDriver driver = null;
-    String projectPath = System.getProperty("user.dir");
+    static String projectPath = System.getProperty("user.dir");
     protected HashMap<String, String> excelTestData = null;
-    Properties envProp = null;
-    int waitDuration = 30;
-    BasePage basePage = new BasePage(driver);
+    protected ExcelDataTable testDataTable = null;
+    static Properties envProp = null;
+    static BrowserPool browserPool = null;
+    static FixtureServer fixtureServer = null;
+    private static boolean suiteFinished = false;
+
+    /**
+     * Returns the WebDriver started for the current test thread.
+     *
+     * @return WebDriver instance, or null if no driver was started on this thread
+     */
+    protected WebDriver getDriver() {
+        return DriverManager.getDriver();
+    }
 
 
     @Parameters({"browser", "env"})
     @BeforeSuite
     public void beforeSuite(@Optional("chrome") String browser, @Optional("Dev") String env) {
+        startSuite(browser, env);
+    }
+
+    /**
+     * Prepares the suite once: loads the environment, starts the browser pool and preloads the test data.
+     * Called by {@link #beforeSuite(String, String)} for TestNG tests and by the Cucumber hooks before the
+     * first scenario; later calls do nothing.
+     *
+     * @param browser Name of the browser the pool starts
+     * @param env     Name of the environment .properties file
+     */
+    public static synchronized void startSuite(String browser, String env) {
+        if (browserPool != null) {
+            return;
+        }
         System.out.println("Before suite");
+        // Driver resolution and test data loading run in the background while the environment is loaded
+        CompletableFuture<Path> driverBinary = DriverBinaries.resolveAsync(browser);
+        CompletableFuture<Void> testData = CompletableFuture.runAsync(BaseTest::preloadTestData);
         loadEnvironementData(env);
-        //loadTestData();
+        driverBinary.join();
+        startBrowserPool(browser);
+        testData.join();
     }
 
-    private void loadEnvironementData(String environment) {
+    private static void loadEnvironementData(String environment) {
         try {
             FileReader reader = new FileReader(projectPath + "/src/test/resources/" + environment + ".properties");
             envProp = new Properties();
             envProp.load(reader);
+            if ("Fixture".equalsIgnoreCase(environment)) {
+                startFixtureServer();
+            }
 
             System.out.println(envProp.get("appurl"));
 
@@ -52,102 +86,159 @@ public class BaseTest {
     }
 
 
-    public void loadTestData() {
+    /**
+     * Starts the local {@link FixtureServer} for the "Fixture" environment and resolves its "appurl",
+     * a path such as /ap/signin, against the server address.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    private static void startFixtureServer() throws IOException {
+        fixtureServer = FixtureServer.fromSystemProperties().start();
+        envProp.setProperty("appurl", fixtureServer.url(envProp.getProperty("appurl", "/ap/signin")));
+    }
+
+    /**
+     * Starts the suite-wide browser pool and launches its browsers up front.
+     * The pool is sized by the "browser.pool.size" system property (default: "parallel.threads", the number of
+     * threads running scenarios, or 1), browsers are
+     * replaced after "browser.pool.maxUses" leases (default 25) and "browser.pool.prewarm"
+     * browsers (default: the pool size) are started before the first test. The browsers are started
+     * with the {@link LaunchProfile} selected for the environment.
+     *
+     * @param browser Name of the browser the pool starts
+     */
+    private static void startBrowserPool(String browser) {
+        int poolSize = Integer.getInteger("browser.pool.size", Integer.getInteger("parallel.threads", 1));
+        int maxUses = Integer.getInteger("browser.pool.maxUses", 25);
+        LaunchProfile profile = LaunchProfile.load(envProp);
+        System.out.println("Launch profile: " + profile);
+        browserPool = new BrowserPool(() -> DriverFactory.createDriver(browser, profile), poolSize, maxUses);
+        browserPool.prewarm(Integer.getInteger("browser.pool.prewarm", poolSize));
+    }
+
+    /**
+     * Loads the test data sheets into the suite-wide {@link TestDataCache} once, before any test runs.
+     * The sheets are listed in the "testdata.sheets" system property (default LoginData); with
+     * "testdata.lazy" set to true they are loaded on first use instead.
+     */
+    private static void preloadTestData() {
+        if (Boolean.getBoolean("testdata.lazy") || !Files.exists(Paths.get(testDataPath()))) {
+            return;
+        }
         try {
-            FileInputStream fs = new FileInputStream(projectPath + "\\testdata\\TestData.xlsx");
-            XSSFWorkbook wb = new XSSFWorkbook(fs);
-            XSSFSheet sheet = wb.getSheet("LoginData");
-            Iterator<Row> rows = sheet.iterator();
+            TestDataCache.getInstance().preload(testDataPath(), System.getProperty("testdata.sheets", "LoginData").split("\\s*,\\s*"));
+        } catch (Exception ex) {
+            System.out.println("Not able to preload test data from excel: " + ex.getMessage());
+        }
+    }
 
-            excelTestData = new HashMap<String, String>();
-            List<String> keys = new ArrayList<String>();
-            List<String> values = new ArrayList<String>();
-
-            boolean isHeader = true;
-
-            while (rows.hasNext()) {
-                XSSFRow eachRow = (XSSFRow) rows.next();
-                Iterator<Cell> cells = eachRow.iterator();
-                while (cells.hasNext()) {
-                    XSSFCell eachCell = (XSSFCell) cells.next();
-                    if (isHeader) {
-                        keys.add(readCellValue(eachCell));
-                    } else {
-                        values.add(readCellValue(eachCell));
-                    }
-                }
-
-                isHeader = false;
-            }
+    private static String testDataPath() {
+        return Paths.get(projectPath, "testdata", "TestData.xlsx").toString();
+    }
 
-            for (int index = 0; index < keys.size(); index++) {
-                excelTestData.put(keys.get(index), values.get(index));
+    /**
+     * Loads the LoginData sheet from the suite-wide {@link TestDataCache} into {@link #testDataTable} and its
+     * first data row into {@link #excelTestData}, keyed by column header.
+     */
+    public void loadTestData() {
+        try {
+            testDataTable = TestDataCache.getInstance().get(testDataPath(), "LoginData");
+            excelTestData = new HashMap<String, String>();
+            if (testDataTable.rowCount() > 0) {
+                excelTestData.putAll(testDataTable.getRow(0));
             }
-
         } catch (Exception ex) {
             System.out.println("Not able to read test data from excel");
         }
     }
 
-    private String readCellValue(XSSFCell cell) {
-        String cellValue = "";
-        if (cell != null) {
-            switch (cell.getCellType()) {
-                case STRING:
-                    cellValue = cell.getStringCellValue();
-                    break;
-                case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
-                        cellValue = dateFormat.format(cell.getDateCellValue());
-                    } else {
-                        cellValue = String.valueOf(cell.getNumericCellValue());
-                    }
-                    break;
-                case BOOLEAN:
-                    cellValue = String.valueOf(cell.getBooleanCellValue());
-                    break;
-                case FORMULA:
-                    cellValue = cell.getCellFormula();
-                    break;
-                case BLANK:
-                    // Do nothing, leave cellValue as empty string
-                    break;
-            }
-        }
-        return cellValue;
+    /**
+     * Returns a value of the loaded test data sheet.
+     *
+     * @param rowNum     The 0-based data row, excluding the header row.
+     * @param columnName The header name of the column.
+     * @return The value of the cell as a String.
+     */
+    protected String getTestData(int rowNum, String columnName) {
+        return testDataTable.get(rowNum, columnName);
     }
 
     @Test
     @Parameters({"browser", "env"})
     @BeforeMethod
     public void beforeMethod(Method method, @Optional("chrome") String browser, @Optional("Dev") String env) {
-        String chromeDriverPath = projectPath + "\\Drivers\\chromedriver.exe";
-        String fireFoxDriverPath = projectPath + "\\Drivers\\geckodriver.exe";
-        String edgeDriverPath = projectPath + "\\Drivers\\msedgedriver.exe";
-        switch (browser.toLowerCase()) {
-            case "chrome":
-                System.out.println(projectPath);
-                System.setProperty("webdriver.chrome.driver", chromeDriverPath);
-                driver = new ChromeDriver();
-                break;
-            case "firefox":
-                System.setProperty("webdriver.gecko.driver", fireFoxDriverPath);
-                driver = new FirefoxDriver();
-                break;
-            case "edge":
-                System.setProperty("webdriver.msedge.driver", edgeDriverPath);
-        }
-        driver.manage().window().maximize();
-        driver.get(String.valueOf(envProp.get("appurl")));
-        basePage.setImplicitWait(waitDuration);
+        leaseBrowser();
     }
 
     @AfterMethod
     public void afterMethod() {
-        if (driver != null) {
-            driver.close();
-            driver.quit();
+        releaseBrowser();
+    }
+
+    /**
+     * Leases a browser from the suite's pool, registers it for the current thread in the {@link DriverManager}
+     * and opens the application URL of the environment. The implicit wait is switched off.
+     *
+     * @return WebDriver instance leased to the current thread
+     * @throws IllegalStateException if the suite was not started
+     */
+    public static WebDriver leaseBrowser() {
+        if (browserPool == null) {
+            throw new IllegalStateException("The suite was not started, see BaseTest.startSuite.");
+        }
+        WebDriver driver = browserPool.acquire();
+        DriverManager.setDriver(driver);
+        PageReadiness readiness = PageReadiness.forDriver(driver);
+        driver.get(String.valueOf(envProp.get("appurl")));
+        readiness.waitUntilReady();
+        // Element lookups wait explicitly (getElement, DomWaitEngine); an implicit wait would make every find of a
+        // missing element inside those waits, and every negative check, block for the whole implicit timeout
+        driver.manage().timeouts().implicitlyWait(Duration.ZERO);
+        return driver;
+    }
+
+    /**
+     * Returns the browser of the current thread to the suite's pool and removes it from the
+     * {@link DriverManager}.
+     */
+    public static void releaseBrowser() {
+        WebDriver driver = DriverManager.getDriver();
+        DriverManager.unload();
+        if (driver != null && browserPool != null) {
+            browserPool.release(driver);
+        }
+    }
+
+    @AfterSuite(alwaysRun = true)
+    public void afterSuite() {
+        finishSuite();
+    }
+
+    /**
+     * Shuts the browser pool down and prints and exports the suite's performance summaries. Called by
+     * {@link #afterSuite()} for TestNG tests and by the Cucumber runners after the run; later calls do nothing.
+     */
+    public static synchronized void finishSuite() {
+        if (suiteFinished) {
+            return;
+        }
+        suiteFinished = true;
+        if (browserPool != null) {
+            browserPool.shutdown();
+            System.out.println(browserPool);
+        }
+        System.out.println(DriverFactory.summary());
+        System.out.println(RoundTripCounter.summary());
+        System.out.println(DomWaitEngine.summary());
+        System.out.println(PageReadiness.summary());
+        System.out.println(SessionStateCache.summary());
+        System.out.println(LocatorRegistry.summary());
+        ActionMetrics.publish();
+        TraceRecorder.write();
+        System.out.println(TestDataCache.getInstance());
+        if (fixtureServer != null) {
+            System.out.println("Fixture server served " + fixtureServer.getRequestCount() + " requests");
+            fixtureServer.close();
         }
     }
 
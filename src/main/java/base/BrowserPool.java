@@ -0,0 +1,356 @@
+package base;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of pre-launched browsers that tests lease and return.
+ * <p>
+ * A returned browser is reset and handed to the next lease: the cookies and storage of every origin it
+ * visited are cleared through the DevTools Protocol, extra windows are closed and the first window is
+ * navigated to about:blank. The first window is kept so the DevTools session attached to it, with its
+ * Network listeners and blocked URLs, stays in place for the next lease.
+ * Browsers without the DevTools Protocol (Firefox) cannot clear other origins through WebDriver, so they
+ * are quit and replaced after every lease. Browsers are also replaced once they reached the configured
+ * number of uses or when they stop responding.
+ */
+public class BrowserPool {
+
+    private final Supplier<WebDriver> factory;
+    private final int maxSize;
+    private final int maxUses;
+    private final Semaphore leases;
+    private final BlockingQueue<PooledBrowser> idle = new LinkedBlockingQueue<>();
+    private final Map<WebDriver, PooledBrowser> leased = new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    private final AtomicLong acquireCount = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong launchCount = new AtomicLong();
+    private final AtomicLong recycleCount = new AtomicLong();
+    private final AtomicLong acquireNanos = new AtomicLong();
+    private final AtomicLong launchNanos = new AtomicLong();
+
+    /**
+     * Constructor to initialize the pool.
+     *
+     * @param factory Supplier starting a new browser session
+     * @param maxSize Maximum number of browsers alive at the same time
+     * @param maxUses Number of leases after which a browser is quit and replaced
+     */
+    public BrowserPool(Supplier<WebDriver> factory, int maxSize, int maxUses) {
+        if (maxSize < 1 || maxUses < 1) {
+            throw new IllegalArgumentException("Pool size and maximum uses must be at least 1.");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxUses = maxUses;
+        this.leases = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Launches browsers in parallel until the pool holds the requested number of idle browsers.
+     *
+     * @param count Number of browsers to have ready, capped at the pool size
+     */
+    public void prewarm(int count) {
+        int missing = Math.min(count, maxSize) - idle.size() - leased.size();
+        if (missing <= 0) {
+            return;
+        }
+        ExecutorService launcher = Executors.newFixedThreadPool(missing);
+        try {
+            List<Future<PooledBrowser>> launches = new ArrayList<>();
+            for (int i = 0; i < missing; i++) {
+                launches.add(launcher.submit(this::launch));
+            }
+            for (Future<PooledBrowser> launch : launches) {
+                try {
+                    idle.offer(launch.get());
+                } catch (Exception e) {
+                    System.out.println("Not able to prewarm browser: " + e.getMessage());
+                }
+            }
+        } finally {
+            launcher.shutdown();
+        }
+    }
+
+    /**
+     * Leases a browser, blocking while all browsers of the pool are in use.
+     *
+     * @return WebDriver instance leased to the caller
+     * @throws IllegalStateException if the pool was shut down
+     */
+    public WebDriver acquire() {
+        long start = System.nanoTime();
+        leases.acquireUninterruptibly();
+        try {
+            PooledBrowser browser;
+            while ((browser = idle.poll()) != null) {
+                if (isHealthy(browser.driver)) {
+                    hitCount.incrementAndGet();
+                    break;
+                }
+                discard(browser);
+            }
+            if (browser == null) {
+                browser = launch();
+            }
+            synchronized (this) {
+                if (!closed) {
+                    leased.put(browser.driver, browser);
+                    return browser.driver;
+                }
+            }
+            quit(browser.driver);
+            throw new IllegalStateException("The browser pool was shut down.");
+        } catch (RuntimeException e) {
+            leases.release();
+            throw e;
+        } finally {
+            acquireCount.incrementAndGet();
+            acquireNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns a leased browser to the pool. The browser is reset for the next lease, or quit when it
+     * reached its maximum number of uses, could not be reset or the pool was shut down.
+     *
+     * @param driver WebDriver instance obtained from {@link #acquire()}
+     */
+    public void release(WebDriver driver) {
+        PooledBrowser browser = leased.remove(driver);
+        if (browser == null) {
+            synchronized (this) {
+                if (closed) {
+                    // Quit by shutdown() while it was leased
+                    leases.release();
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("WebDriver was not leased from this pool.");
+        }
+        try {
+            browser.uses++;
+            if (browser.uses >= maxUses || isClosed() || !reset(browser.driver)) {
+                discard(browser);
+                return;
+            }
+            synchronized (this) {
+                if (!closed) {
+                    idle.offer(browser);
+                    return;
+                }
+            }
+            discard(browser);
+        } finally {
+            leases.release();
+        }
+    }
+
+    /**
+     * Quits all browsers of the pool, idle and leased. Browsers returned afterwards are quit instead of
+     * pooled and no more browsers are leased.
+     */
+    public void shutdown() {
+        List<PooledBrowser> browsers = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            idle.drainTo(browsers);
+            browsers.addAll(leased.values());
+            leased.clear();
+        }
+        for (PooledBrowser browser : browsers) {
+            quit(browser.driver);
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the share of leases served by an already running browser.
+     *
+     * @return Hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long acquires = acquireCount.get();
+        return acquires == 0 ? 0 : (double) hitCount.get() / acquires;
+    }
+
+    /**
+     * Returns the average time a lease waited for its browser.
+     *
+     * @return Average acquire latency in milliseconds
+     */
+    public double getAverageAcquireMillis() {
+        long acquires = acquireCount.get();
+        return acquires == 0 ? 0 : acquireNanos.get() / 1_000_000.0 / acquires;
+    }
+
+    /**
+     * Returns the average time it took to start a new browser.
+     *
+     * @return Average launch time in milliseconds
+     */
+    public double getAverageLaunchMillis() {
+        long launches = launchCount.get();
+        return launches == 0 ? 0 : launchNanos.get() / 1_000_000.0 / launches;
+    }
+
+    /**
+     * Returns the browser startup time saved by the leases served from the pool.
+     *
+     * @return Estimated time saved in milliseconds
+     */
+    public double getEstimatedSavedMillis() {
+        return hitCount.get() * getAverageLaunchMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BrowserPool[size=%d, maxUses=%d, acquires=%d, hits=%d, launches=%d, recycled=%d, "
+                        + "hitRate=%.1f%%, avgAcquire=%.1f ms, avgLaunch=%.1f ms, saved=%.1f s]",
+                maxSize, maxUses, acquireCount.get(), hitCount.get(), launchCount.get(), recycleCount.get(),
+                getHitRate() * 100, getAverageAcquireMillis(), getAverageLaunchMillis(), getEstimatedSavedMillis() / 1000);
+    }
+
+    private PooledBrowser launch() {
+        long start = System.nanoTime();
+        WebDriver driver = factory.get();
+        launchNanos.addAndGet(System.nanoTime() - start);
+        launchCount.incrementAndGet();
+        return new PooledBrowser(driver);
+    }
+
+    private void discard(PooledBrowser browser) {
+        recycleCount.incrementAndGet();
+        quit(browser.driver);
+    }
+
+    private static void quit(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (WebDriverException e) {
+            System.out.println("Not able to quit pooled browser: " + e.getMessage());
+        }
+    }
+
+    private static boolean isHealthy(WebDriver driver) {
+        try {
+            return driver.getWindowHandle() != null;
+        } catch (WebDriverException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Clears the state a test left behind: the cookies of all domains, the storage of every origin the
+     * windows navigated to or that has cookies, and the windows themselves. All windows but the first are
+     * closed; the first one has its session storage cleared and is navigated to about:blank.
+     *
+     * @param driver WebDriver instance to reset
+     * @return true if the browser was reset and can be leased again
+     */
+    private static boolean reset(WebDriver driver) {
+        if (!(driver instanceof HasCdp)) {
+            // WebDriver only clears the cookies and storage of the current origin
+            return false;
+        }
+        HasCdp cdp = (HasCdp) driver;
+        try {
+            Set<String> origins = new TreeSet<>();
+            List<String> handles = new ArrayList<>(driver.getWindowHandles());
+            for (String handle : handles) {
+                driver.switchTo().window(handle);
+                addHistoryOrigins(origins, cdp.executeCdpCommand("Page.getNavigationHistory", Collections.emptyMap()));
+            }
+            addCookieOrigins(origins, cdp.executeCdpCommand("Network.getAllCookies", Collections.emptyMap()));
+            cdp.executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            for (String origin : origins) {
+                Map<String, Object> parameters = new HashMap<>();
+                parameters.put("origin", origin);
+                parameters.put("storageTypes", "all");
+                cdp.executeCdpCommand("Storage.clearDataForOrigin", parameters);
+            }
+            for (String handle : handles.subList(1, handles.size())) {
+                driver.switchTo().window(handle);
+                driver.close();
+            }
+            driver.switchTo().window(handles.get(0));
+            // Session storage belongs to the window, not to the origin data cleared above
+            ((JavascriptExecutor) driver).executeScript("try { window.sessionStorage.clear(); } catch (e) {}");
+            driver.navigate().to("about:blank");
+            return true;
+        } catch (WebDriverException e) {
+            System.out.println("Not able to reset pooled browser: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addHistoryOrigins(Set<String> origins, Map<String, Object> history) {
+        Object entries = history.get("entries");
+        if (entries instanceof List) {
+            for (Map<String, Object> entry : (List<Map<String, Object>>) entries) {
+                addOrigin(origins, String.valueOf(entry.get("url")));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addCookieOrigins(Set<String> origins, Map<String, Object> result) {
+        Object cookies = result.get("cookies");
+        if (cookies instanceof List) {
+            for (Map<String, Object> cookie : (List<Map<String, Object>>) cookies) {
+                String domain = String.valueOf(cookie.get("domain"));
+                domain = domain.startsWith(".") ? domain.substring(1) : domain;
+                origins.add("https://" + domain);
+                origins.add("http://" + domain);
+            }
+        }
+    }
+
+    private static void addOrigin(Set<String> origins, String url) {
+        try {
+            URI uri = URI.create(url);
+            if (("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) && uri.getHost() != null) {
+                origins.add(uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort()));
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a URL with an origin, e.g. about:blank or data: URLs
+        }
+    }
+
+    private static final class PooledBrowser {
+        private final WebDriver driver;
+        private int uses;
+
+        private PooledBrowser(WebDriver driver) {
+            this.driver = driver;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package base;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.support.ui.ExpectedCondition;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Waits for element conditions, either by polling with WebDriverWait or with an observer inside the page.
+ * <p>
+ * The engine is chosen with the "wait.engine" system property. "polling" (default) uses WebDriverWait, which
+ * sends a find and a check to the browser every poll interval. "observer" sends one async script that checks
+ * the condition whenever a MutationObserver reports a change, at most once per animation frame, and resolves
+ * as soon as it holds; it takes one round-trip per wait instead of one per poll. Locators other than id,
+ * css selector, xpath, name, class name and tag name always use polling.
+ * <p>
+ * Both engines record the time spent waiting and the browser calls made, see {@link #summary()}.
+ */
+public final class DomWaitEngine {
+
+    /**
+     * Conditions the engine can wait for, matching the ExpectedConditions of the same name.
+     */
+    public enum Condition {
+        VISIBLE("visibility of element located by "),
+        CLICKABLE("element to be clickable: "),
+        SELECTED("element to be selected: ");
+
+        private final String description;
+
+        Condition(String description) {
+            this.description = description;
+        }
+
+        private ExpectedCondition<?> expected(By locator) {
+            switch (this) {
+                case CLICKABLE:
+                    return ExpectedConditions.elementToBeClickable(locator);
+                case SELECTED:
+                    return ExpectedConditions.elementToBeSelected(locator);
+                default:
+                    return ExpectedConditions.visibilityOfElementLocated(locator);
+            }
+        }
+    }
+
+    private static final boolean OBSERVER = "observer".equalsIgnoreCase(System.getProperty("wait.engine", "polling"));
+
+    /**
+     * Poll interval of WebDriverWait, used to estimate what the observer waits would have cost when polling.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    /**
+     * Async scripts must finish within the driver's script timeout (30 seconds by default), so longer waits
+     * are split into several script calls of at most this length.
+     */
+    private static final long SCRIPT_CHUNK_MILLIS = Long.getLong("wait.observer.chunkMillis", 25_000);
+
+    private static final String OBSERVER_SCRIPT =
+            "var using = arguments[0], value = arguments[1], condition = arguments[2], timeout = arguments[3];"
+                    + "var done = arguments[arguments.length - 1];"
+                    + "var checks = 0, finished = false, scheduled = false, observer = null, timer = null, safety = null;"
+                    + "function find() {"
+                    + "  switch (using) {"
+                    + "    case 'id': return document.getElementById(value);"
+                    + "    case 'css': return document.querySelector(value);"
+                    + "    case 'xpath': return document.evaluate(value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+                    + "    case 'name': return document.getElementsByName(value)[0] || null;"
+                    + "    case 'className': return document.getElementsByClassName(value)[0] || null;"
+                    + "    default: return document.getElementsByTagName(value)[0] || null;"
+                    + "  }"
+                    + "}"
+                    + "function visible(e) {"
+                    + "  var s = window.getComputedStyle(e);"
+                    + "  return e.getClientRects().length > 0 && s.visibility !== 'hidden' && s.opacity !== '0';"
+                    + "}"
+                    + "function holds(e) {"
+                    + "  if (condition === 'SELECTED') { return e.selected === true || e.checked === true; }"
+                    + "  return visible(e) && (condition !== 'CLICKABLE' || !e.disabled);"
+                    + "}"
+                    + "function finish(e) {"
+                    + "  finished = true;"
+                    + "  if (observer) { observer.disconnect(); }"
+                    + "  document.removeEventListener('transitionend', schedule, true);"
+                    + "  document.removeEventListener('animationend', schedule, true);"
+                    + "  clearTimeout(timer); clearInterval(safety);"
+                    + "  done({ element: e, checks: checks });"
+                    + "}"
+                    + "function check() {"
+                    + "  scheduled = false;"
+                    + "  if (finished) { return; }"
+                    + "  checks++;"
+                    + "  var e = find();"
+                    + "  if (e && holds(e)) { finish(e); }"
+                    + "}"
+                    + "function schedule() {"
+                    + "  if (!scheduled && !finished) { scheduled = true; requestAnimationFrame(check); }"
+                    + "}"
+                    + "check();"
+                    + "if (!finished) {"
+                    + "  observer = new MutationObserver(schedule);"
+                    + "  observer.observe(document, { subtree: true, childList: true, attributes: true, characterData: true });"
+                    + "  document.addEventListener('transitionend', schedule, true);"
+                    + "  document.addEventListener('animationend', schedule, true);"
+                    + "  safety = setInterval(check, 1000);"
+                    + "  timer = setTimeout(function () { finish(null); }, timeout);"
+                    + "}";
+
+    private static final LongAdder POLLING_WAITS = new LongAdder();
+    private static final LongAdder POLLING_NANOS = new LongAdder();
+    private static final LongAdder POLLS = new LongAdder();
+    private static final LongAdder OBSERVER_WAITS = new LongAdder();
+    private static final LongAdder OBSERVER_NANOS = new LongAdder();
+    private static final LongAdder OBSERVER_SCRIPTS = new LongAdder();
+    private static final LongAdder OBSERVER_CHECKS = new LongAdder();
+    private static final LongAdder ESTIMATED_POLLS = new LongAdder();
+
+    private DomWaitEngine() {
+    }
+
+    /**
+     * Wait until the condition holds for the element located by the locator.
+     *
+     * @param session The session of the driver to wait with.
+     * @param locator The locator used to find the element.
+     * @param condition The condition to wait for.
+     * @param timeout The maximum duration to wait.
+     * @throws TimeoutException if the condition does not hold within the timeout.
+     */
+    public static void await(DriverSession session, By locator, Condition condition, Duration timeout) {
+        String[] using = OBSERVER ? toScriptLocator(locator) : null;
+        if (using != null) {
+            try {
+                awaitWithObserver(session, using, locator, condition, timeout);
+                return;
+            } catch (UnsupportedCommandException e) {
+                System.out.println("Async scripts are not supported, falling back to polling: " + e.getMessage());
+            }
+        }
+        awaitWithPolling(session, locator, condition, timeout);
+    }
+
+    /**
+     * Builds a summary of the recorded waits of both engines and the polls the observer waits saved.
+     * Wait times are measured; the saved polls are derived from the measured observer wait times.
+     *
+     * @return Summary with waits, measured wait time and browser calls per engine
+     */
+    public static String summary() {
+        long pollingWaits = POLLING_WAITS.sum();
+        long observerWaits = OBSERVER_WAITS.sum();
+        long estimatedPolls = ESTIMATED_POLLS.sum();
+        long scripts = OBSERVER_SCRIPTS.sum();
+        return String.format("Element waits:"
+                        + "%n  polling   waits=%-6d totalMs=%-8d avgMs=%-8.1f polls=%d"
+                        + "%n  observer  waits=%-6d totalMs=%-8d avgMs=%-8.1f scriptCalls=%d inPageChecks=%d"
+                        + "%n  observer savings: ~%d polls avoided (the polls of %dms-interval waits lasting as long)",
+                pollingWaits, POLLING_NANOS.sum() / 1_000_000, average(POLLING_NANOS.sum(), pollingWaits), POLLS.sum(),
+                observerWaits, OBSERVER_NANOS.sum() / 1_000_000, average(OBSERVER_NANOS.sum(), observerWaits), scripts,
+                OBSERVER_CHECKS.sum(), Math.max(0, estimatedPolls - scripts), POLL_INTERVAL_MILLIS);
+    }
+
+    private static void awaitWithPolling(DriverSession session, By locator, Condition condition, Duration timeout) {
+        ExpectedCondition<?> expected = condition.expected(locator);
+        long start = System.nanoTime();
+        try {
+            session.getWait(timeout).until(driver -> {
+                POLLS.increment();
+                return expected.apply(driver);
+            });
+        } finally {
+            POLLING_WAITS.increment();
+            POLLING_NANOS.add(System.nanoTime() - start);
+        }
+    }
+
+    private static void awaitWithObserver(DriverSession session, String[] using, By locator, Condition condition,
+                                          Duration timeout) {
+        JavascriptExecutor js = session.getJavascriptExecutor();
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        try {
+            while (true) {
+                long remainingMillis = (deadline - System.nanoTime()) / 1_000_000;
+                if (remainingMillis <= 0) {
+                    throw new TimeoutException(String.format("Expected condition failed: waiting for %s%s (tried for %d second(s) with an in-page observer)",
+                            condition.description, locator, timeout.getSeconds()));
+                }
+                OBSERVER_SCRIPTS.increment();
+                Object result;
+                try {
+                    result = js.executeAsyncScript(OBSERVER_SCRIPT, using[0], using[1], condition.name(),
+                            Math.min(remainingMillis, SCRIPT_CHUNK_MILLIS));
+                } catch (UnsupportedCommandException e) {
+                    throw e;
+                } catch (WebDriverException e) {
+                    // The page navigated away or rejected the script; poll for the rest of the timeout
+                    awaitWithPolling(session, locator, condition,
+                            Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+                    return;
+                }
+                if (result instanceof Map) {
+                    Map<?, ?> outcome = (Map<?, ?>) result;
+                    if (outcome.get("checks") instanceof Number) {
+                        OBSERVER_CHECKS.add(((Number) outcome.get("checks")).longValue());
+                    }
+                    if (outcome.get("element") != null) {
+                        return;
+                    }
+                }
+            }
+        } finally {
+            long waitedNanos = System.nanoTime() - start;
+            OBSERVER_WAITS.increment();
+            OBSERVER_NANOS.add(waitedNanos);
+            ESTIMATED_POLLS.add(waitedNanos / 1_000_000 / POLL_INTERVAL_MILLIS + 1);
+        }
+    }
+
+    /**
+     * Translate a locator into the strategy and value the observer script understands.
+     *
+     * @return The strategy and value, or null if the locator has to be polled.
+     */
+    private static String[] toScriptLocator(By locator) {
+        String using;
+        if (locator instanceof By.ById) {
+            using = "id";
+        } else if (locator instanceof By.ByCssSelector) {
+            using = "css";
+        } else if (locator instanceof By.ByXPath) {
+            using = "xpath";
+        } else if (locator instanceof By.ByName) {
+            using = "name";
+        } else if (locator instanceof By.ByClassName) {
+            using = "className";
+        } else if (locator instanceof By.ByTagName) {
+            using = "tagName";
+        } else {
+            return null;
+        }
+        // The built-in locators print as "By.<strategy>: <value>"
+        String description = locator.toString();
+        int separator = description.indexOf(": ");
+        return separator < 0 ? null : new String[]{using, description.substring(separator + 2)};
+    }
+
+    private static double average(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1_000_000.0 / count;
+    }
+}
@@ -0,0 +1,192 @@
+package base;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the driver binaries (chromedriver, geckodriver, msedgedriver) once per suite, so starting a browser
+ * only looks the binary up.
+ * <p>
+ * A binary is taken from, in this order:
+ * <ol>
+ *     <li>the Selenium system property, e.g. "webdriver.chrome.driver", if it names an existing file</li>
+ *     <li>the project's Drivers folder, e.g. Drivers/chromedriver.exe on Windows or Drivers/chromedriver elsewhere</li>
+ *     <li>the driver cache ("driver.cache.dir" system property, default Drivers/cache), where WebDriverManager
+ *     keeps the binaries in versioned folders; a binary resolved less than "driver.cache.ttlHours" ago
+ *     (default 24) is used without contacting the network, and with "driver.offline" set to true any cached
+ *     binary is used whatever its age, and nothing is downloaded</li>
+ * </ol>
+ * When WebDriverManager cannot reach the network, the last binary resolved for the browser is used even if it
+ * is older than the TTL. When nothing is found, the browser is started through Selenium Manager.
+ */
+public final class DriverBinaries {
+
+    private static final Path CACHE_DIR = Paths.get(System.getProperty("driver.cache.dir",
+            Paths.get(System.getProperty("user.dir"), "Drivers", "cache").toString())).toAbsolutePath();
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("driver.cache.ttlHours", 24));
+    private static final boolean OFFLINE = Boolean.getBoolean("driver.offline");
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase(Locale.ROOT).contains("win");
+    private static final String PLATFORM = System.getProperty("os.name").toLowerCase(Locale.ROOT).replaceAll("[^a-z]", "")
+            + "-" + System.getProperty("os.arch");
+
+    private static final Map<String, CompletableFuture<Path>> RESOLVED = new ConcurrentHashMap<>();
+
+    private DriverBinaries() {
+    }
+
+    /**
+     * Starts resolving the driver binary of a browser in the background. Resolving a browser again returns the
+     * same result.
+     *
+     * @param browser Name of the browser (chrome, firefox or edge)
+     * @return Future completing with the binary, or with null if the browser is to be started through
+     * Selenium Manager; it never completes exceptionally
+     */
+    public static CompletableFuture<Path> resolveAsync(String browser) {
+        return RESOLVED.computeIfAbsent(browser.toLowerCase(Locale.ROOT), name -> CompletableFuture.supplyAsync(() -> {
+            long started = System.nanoTime();
+            Path binary = resolve(name);
+            System.out.println("Driver binary for " + name + ": " + (binary == null ? "Selenium Manager" : binary)
+                    + " (" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms)");
+            return binary;
+        }));
+    }
+
+    /**
+     * Returns the resolved driver binary of a browser, resolving it now if {@link #resolveAsync(String)} was not
+     * called before.
+     *
+     * @param browser Name of the browser (chrome, firefox or edge)
+     * @return The driver binary, or null to start the browser through Selenium Manager
+     */
+    public static Path lookup(String browser) {
+        return resolveAsync(browser).join();
+    }
+
+    private static Path resolve(String browser) {
+        String driverName = driverName(browser);
+        if (driverName == null) {
+            return null;
+        }
+        String configured = System.getProperty(systemProperty(browser));
+        if (configured != null && Files.isRegularFile(Paths.get(configured))) {
+            return Paths.get(configured).toAbsolutePath();
+        }
+        Path projectDriver = Paths.get(System.getProperty("user.dir"), "Drivers", WINDOWS ? driverName + ".exe" : driverName);
+        if (Files.isRegularFile(projectDriver)) {
+            return projectDriver;
+        }
+        try {
+            synchronized (DriverBinaries.class) {
+                Properties index = readIndex();
+                Path cached = cachedBinary(index, browser);
+                long resolvedAt = resolvedAt(index, browser);
+                if (cached != null && (OFFLINE || System.currentTimeMillis() - resolvedAt < TTL_MILLIS)) {
+                    return cached;
+                }
+                if (OFFLINE) {
+                    System.out.println("No cached " + driverName + " for " + PLATFORM + " in " + CACHE_DIR + " and driver.offline is set");
+                    return null;
+                }
+                try {
+                    WebDriverManager manager = WebDriverManager.getInstance(browser)
+                            .cachePath(CACHE_DIR.toString())
+                            .resolutionCachePath(CACHE_DIR.toString())
+                            .avoidExport()
+                            .avoidShutdownHook();
+                    manager.setup();
+                    Path binary = Paths.get(manager.getDownloadedDriverPath()).toAbsolutePath();
+                    index.setProperty(browser + "." + PLATFORM + ".path", CACHE_DIR.relativize(binary).toString());
+                    index.setProperty(browser + "." + PLATFORM + ".version", String.valueOf(manager.getDownloadedDriverVersion()));
+                    index.setProperty(browser + "." + PLATFORM + ".resolvedAt", String.valueOf(System.currentTimeMillis()));
+                    writeIndex(index);
+                    return binary;
+                } catch (RuntimeException e) {
+                    System.out.println("Not able to resolve " + driverName + " with WebDriverManager: " + e.getMessage());
+                    return cached;
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Not able to use the driver cache " + CACHE_DIR + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Time the cached binary was resolved at; 0, which makes the entry stale, when the index holds no valid time.
+     */
+    private static long resolvedAt(Properties index, String browser) {
+        try {
+            return Long.parseLong(index.getProperty(browser + "." + PLATFORM + ".resolvedAt", "0").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Path cachedBinary(Properties index, String browser) {
+        String path = index.getProperty(browser + "." + PLATFORM + ".path");
+        if (path == null) {
+            return null;
+        }
+        Path binary = CACHE_DIR.resolve(path);
+        return Files.isRegularFile(binary) ? binary : null;
+    }
+
+    private static Properties readIndex() throws IOException {
+        Properties index = new Properties();
+        Path file = CACHE_DIR.resolve("drivers.properties");
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                index.load(reader);
+            }
+        }
+        return index;
+    }
+
+    private static void writeIndex(Properties index) throws IOException {
+        Files.createDirectories(CACHE_DIR);
+        Path temp = Files.createTempFile(CACHE_DIR, "drivers", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            index.store(writer, "Driver binaries resolved per browser and platform, relative to this folder");
+        }
+        Files.move(temp, CACHE_DIR.resolve("drivers.properties"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String driverName(String browser) {
+        switch (browser) {
+            case "chrome":
+                return "chromedriver";
+            case "firefox":
+                return "geckodriver";
+            case "edge":
+                return "msedgedriver";
+            default:
+                return null;
+        }
+    }
+
+    private static String systemProperty(String browser) {
+        switch (browser) {
+            case "firefox":
+                return "webdriver.gecko.driver";
+            case "edge":
+                return "webdriver.edge.driver";
+            default:
+                return "webdriver.chrome.driver";
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package base;
+
+import common.ActionMetrics;
+import common.LatencyHistogram;
+import common.RoundTripCounter;
+import common.TraceRecorder;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.chromium.HasCdp;
+import org.openqa.selenium.edge.EdgeDriver;
+import org.openqa.selenium.edge.EdgeDriverService;
+import org.openqa.selenium.edge.EdgeOptions;
+import org.openqa.selenium.firefox.FirefoxDriver;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import org.openqa.selenium.support.events.EventFiringDecorator;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory that starts a new WebDriver for the requested browser.
+ */
+public final class DriverFactory {
+
+    private static final Map<String, LatencyHistogram> STARTUP_TIMES = new ConcurrentHashMap<>();
+
+    private DriverFactory() {
+    }
+
+    /**
+     * Starts a new, maximized browser session with the default launch profile.
+     *
+     * @param browser Name of the browser to start (chrome, firefox or edge)
+     * @return WebDriver instance of the started browser
+     * @throws IllegalStateException if no driver could be started for the browser
+     */
+    public static WebDriver createDriver(String browser) {
+        return createDriver(browser, LaunchProfile.defaults());
+    }
+
+    /**
+     * Starts a new browser session with the options of a launch profile. The driver binary is looked up in
+     * {@link DriverBinaries}, which resolves it once per suite. The startup time is recorded per browser and
+     * profile, see {@link #summary()}.
+     * Unless the "perf.roundTrips" system property is false, the driver is decorated with a
+     * {@link RoundTripCounter} so page actions can report the WebDriver commands they send, and unless
+     * "perf.actionMetrics" is false, with {@link ActionMetrics} to time the phases of page actions. With
+     * "trace.enabled" set, every command is also recorded by the {@link TraceRecorder}.
+     *
+     * @param browser Name of the browser to start (chrome, firefox or edge)
+     * @param profile Launch profile with the browser options
+     * @return WebDriver instance of the started browser
+     * @throws IllegalStateException if no driver could be started for the browser
+     */
+    public static WebDriver createDriver(String browser, LaunchProfile profile) {
+        long started = System.nanoTime();
+        Path driverBinary = DriverBinaries.lookup(browser);
+        WebDriver driver = null;
+        Path userDataDir = null;
+        try {
+            switch (browser.toLowerCase()) {
+                case "chrome":
+                    ChromeDriverService.Builder chromeService = new ChromeDriverService.Builder();
+                    if (driverBinary != null) {
+                        chromeService.usingDriverExecutable(driverBinary.toFile());
+                    }
+                    ChromeOptions chromeOptions = new ChromeOptions();
+                    userDataDir = profile.apply(chromeOptions, "chrome");
+                    driver = new ChromeDriver(chromeService.build(), chromeOptions);
+                    break;
+                case "firefox":
+                    GeckoDriverService.Builder firefoxService = new GeckoDriverService.Builder();
+                    if (driverBinary != null) {
+                        firefoxService.usingDriverExecutable(driverBinary.toFile());
+                    }
+                    FirefoxOptions firefoxOptions = new FirefoxOptions();
+                    userDataDir = profile.apply(firefoxOptions);
+                    driver = new FirefoxDriver(firefoxService.build(), firefoxOptions);
+                    break;
+                case "edge":
+                    EdgeDriverService.Builder edgeService = new EdgeDriverService.Builder();
+                    if (driverBinary != null) {
+                        edgeService.usingDriverExecutable(driverBinary.toFile());
+                    }
+                    EdgeOptions edgeOptions = new EdgeOptions();
+                    userDataDir = profile.apply(edgeOptions, "edge");
+                    driver = new EdgeDriver(edgeService.build(), edgeOptions);
+                    break;
+            }
+        } finally {
+            LaunchProfile.bind(userDataDir, driver);
+        }
+        if (driver == null) {
+            throw new IllegalStateException("No WebDriver could be started for browser '" + browser + "'.");
+        }
+        if (profile.isBlockFonts() && driver instanceof HasCdp) {
+            blockFonts((HasCdp) driver);
+        }
+        List<WebDriverListener> listeners = new ArrayList<>();
+        if (Boolean.parseBoolean(System.getProperty("perf.roundTrips", "true"))) {
+            listeners.add(new RoundTripCounter());
+        }
+        if (ActionMetrics.isEnabled()) {
+            listeners.add(new ActionMetrics());
+        }
+        if (TraceRecorder.isEnabled()) {
+            listeners.add(new TraceRecorder());
+        }
+        if (!listeners.isEmpty()) {
+            driver = new EventFiringDecorator<>(listeners.toArray(new WebDriverListener[0])).decorate(driver);
+        }
+        if (profile.isMaximized()) {
+            driver.manage().window().maximize();
+        }
+        STARTUP_TIMES.computeIfAbsent(browser.toLowerCase() + " / " + profile, key -> new LatencyHistogram())
+                .recordNanos(System.nanoTime() - started);
+        return driver;
+    }
+
+    /**
+     * Blocks requests for web fonts in Chromium browsers.
+     *
+     * @param driver Chromium driver to block the fonts of
+     */
+    private static void blockFonts(HasCdp driver) {
+        try {
+            driver.executeCdpCommand("Network.enable", Collections.emptyMap());
+            driver.executeCdpCommand("Network.setBlockedURLs",
+                    Collections.singletonMap("urls", Arrays.asList("*.woff", "*.woff2", "*.ttf", "*.otf", "*.eot")));
+        } catch (WebDriverException e) {
+            System.out.println("Not able to block web fonts: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the startup times of the browsers started so far, per browser and launch profile.
+     *
+     * @return One line per browser and profile with the number of starts and their startup times
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder("Browser startup:");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(STARTUP_TIMES).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            summary.append(String.format("%n  %s starts=%d avgMs=%.1f p95Ms=%.1f maxMs=%.1f", entry.getKey(),
+                    histogram.getCount(), histogram.getMeanMicros() / 1000.0,
+                    histogram.getPercentileMicros(95) / 1000.0, histogram.getMaxMicros() / 1000.0));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package base;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Thread-confined registry of WebDriver sessions.
+ * <p>
+ * Every test thread registers the driver it started here, and {@link BaseTest}, {@link BasePage},
+ * the Cucumber hooks and the page objects resolve the driver of the calling thread through it.
+ * This keeps each parallel scenario on its own browser with its own wait and JavaScript state.
+ */
+public final class DriverManager {
+
+    private static final ThreadLocal<DriverSession> SESSIONS = new ThreadLocal<>();
+
+    private DriverManager() {
+    }
+
+    /**
+     * Registers the WebDriver instance for the current thread, replacing any previous session.
+     *
+     * @param driver WebDriver instance started by the current thread
+     */
+    public static void setDriver(WebDriver driver) {
+        SESSIONS.set(new DriverSession(driver));
+    }
+
+    /**
+     * Returns the WebDriver registered for the current thread.
+     *
+     * @return WebDriver instance, or null if the thread has no session
+     */
+    public static WebDriver getDriver() {
+        DriverSession session = SESSIONS.get();
+        return session == null ? null : session.getDriver();
+    }
+
+    /**
+     * Returns the session registered for the current thread.
+     *
+     * @return DriverSession of the current thread
+     * @throws IllegalStateException if no driver was registered for the current thread
+     */
+    public static DriverSession getSession() {
+        DriverSession session = SESSIONS.get();
+        if (session == null) {
+            throw new IllegalStateException("No WebDriver registered for thread '" + Thread.currentThread().getName() + "'.");
+        }
+        return session;
+    }
+
+    /**
+     * Checks whether the current thread has a registered driver.
+     *
+     * @return true if a driver is registered for the current thread
+     */
+    public static boolean hasDriver() {
+        return SESSIONS.get() != null;
+    }
+
+    /**
+     * Removes the session of the current thread without quitting the driver.
+     */
+    public static void unload() {
+        SESSIONS.remove();
+    }
+}
@@ -0,0 +1,60 @@
+package base;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Browser session state owned by a single test thread: the WebDriver together with
+ * the waits and the JavaScript executor bound to it.
+ * <p>
+ * Instances are handed out by {@link DriverManager} and must not be shared between threads.
+ */
+public class DriverSession {
+
+    private final WebDriver driver;
+    private final JavascriptExecutor js;
+    private final Map<Duration, WebDriverWait> waits = new HashMap<>();
+
+    /**
+     * Constructor to initialize the session with the WebDriver instance.
+     *
+     * @param driver WebDriver instance owned by the current thread
+     */
+    public DriverSession(WebDriver driver) {
+        this.driver = driver;
+        this.js = (JavascriptExecutor) driver;
+    }
+
+    /**
+     * Returns the WebDriver instance of this session.
+     *
+     * @return WebDriver instance
+     */
+    public WebDriver getDriver() {
+        return driver;
+    }
+
+    /**
+     * Returns the JavascriptExecutor view of the session driver.
+     *
+     * @return JavascriptExecutor instance
+     */
+    public JavascriptExecutor getJavascriptExecutor() {
+        return js;
+    }
+
+    /**
+     * Returns a WebDriverWait with the given timeout, creating it on first use.
+     *
+     * @param timeout The maximum duration the wait polls for.
+     * @return WebDriverWait bound to the session driver
+     */
+    public WebDriverWait getWait(Duration timeout) {
+        return waits.computeIfAbsent(timeout, t -> new WebDriverWait(driver, t));
+    }
+}
@@ -0,0 +1,284 @@
+package base;
+
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.ChromiumOptions;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Named set of browser launch options.
+ * <p>
+ * Profiles are declared with "profile.&lt;name&gt;.&lt;option&gt;" keys in src/test/resources/launch-profiles.properties
+ * ("launch.profiles.file" system property), in the environment .properties file, or as system properties, each
+ * overriding the one before. The profile used is named by "launch.profile" in the same places (default
+ * "default"). The options are:
+ * <ul>
+ *     <li>headless - true to start the browser without a window (default false)</li>
+ *     <li>pageLoadStrategy - normal, eager or none (default normal)</li>
+ *     <li>blockImages - true to not load images (default false)</li>
+ *     <li>blockFonts - true to not load web fonts (default false)</li>
+ *     <li>windowSize - WIDTHxHEIGHT, e.g. 1920x1080, or maximize (default maximize)</li>
+ *     <li>disableBackgroundThrottling - true to keep timers and rendering of background windows at full speed
+ *     (default false)</li>
+ *     <li>disableExtensions - true to start Chromium browsers without extensions (default false)</li>
+ *     <li>userDataDir - template of a browser profile directory kept between runs, with the placeholders
+ *     {browser}, {profile} and {slot}; each running browser gets the lowest free slot (default none, a new
+ *     temporary profile per browser)</li>
+ * </ul>
+ */
+public final class LaunchProfile {
+
+    private static final Map<Path, WeakReference<WebDriver>> USER_DATA_DIRS = new HashMap<>();
+
+    private final String name;
+    private final boolean headless;
+    private final PageLoadStrategy pageLoadStrategy;
+    private final boolean blockImages;
+    private final boolean blockFonts;
+    private final int[] windowSize;
+    private final boolean disableBackgroundThrottling;
+    private final boolean disableExtensions;
+    private final String userDataDir;
+
+    private LaunchProfile(String name, Properties properties) {
+        this.name = name;
+        this.headless = Boolean.parseBoolean(option(properties, "headless", "false"));
+        this.pageLoadStrategy = PageLoadStrategy.fromString(option(properties, "pageLoadStrategy", "normal").toLowerCase(Locale.ROOT));
+        if (pageLoadStrategy == null) {
+            throw new IllegalArgumentException("Unknown page load strategy in launch profile '" + name + "'.");
+        }
+        this.blockImages = Boolean.parseBoolean(option(properties, "blockImages", "false"));
+        this.blockFonts = Boolean.parseBoolean(option(properties, "blockFonts", "false"));
+        this.windowSize = parseWindowSize(option(properties, "windowSize", "maximize"));
+        this.disableBackgroundThrottling = Boolean.parseBoolean(option(properties, "disableBackgroundThrottling", "false"));
+        this.disableExtensions = Boolean.parseBoolean(option(properties, "disableExtensions", "false"));
+        this.userDataDir = option(properties, "userDataDir", "").trim();
+    }
+
+    /**
+     * Returns the profile named by "launch.profile", declared in the profiles file, the environment
+     * properties or the system properties.
+     *
+     * @param environment Properties of the environment, may be null
+     * @return The selected launch profile
+     */
+    public static LaunchProfile load(Properties environment) {
+        Properties properties = new Properties();
+        Path profilesFile = Paths.get(System.getProperty("launch.profiles.file",
+                Paths.get(System.getProperty("user.dir"), "src", "test", "resources", "launch-profiles.properties").toString()));
+        if (Files.exists(profilesFile)) {
+            try (FileReader reader = new FileReader(profilesFile.toFile())) {
+                properties.load(reader);
+            } catch (IOException e) {
+                System.out.println("Not able to read launch profiles from " + profilesFile + ": " + e.getMessage());
+            }
+        }
+        if (environment != null) {
+            properties.putAll(environment);
+        }
+        properties.putAll(System.getProperties());
+        return new LaunchProfile(properties.getProperty("launch.profile", "default").trim(), properties);
+    }
+
+    /**
+     * Returns the profile without options: a maximized browser with a new temporary profile.
+     *
+     * @return The default launch profile
+     */
+    public static LaunchProfile defaults() {
+        return new LaunchProfile("default", new Properties());
+    }
+
+    private String option(Properties properties, String option, String defaultValue) {
+        return properties.getProperty("profile." + name + "." + option, defaultValue).trim();
+    }
+
+    private static int[] parseWindowSize(String windowSize) {
+        if (windowSize.equalsIgnoreCase("maximize")) {
+            return null;
+        }
+        String[] size = windowSize.toLowerCase(Locale.ROOT).split("x");
+        if (size.length != 2) {
+            throw new IllegalArgumentException("Window size must be WIDTHxHEIGHT or maximize, was '" + windowSize + "'.");
+        }
+        return new int[]{Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim())};
+    }
+
+    /**
+     * Returns the name of the profile.
+     *
+     * @return Name used in the "profile.&lt;name&gt;" keys
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Checks whether the browser window has to be maximized after the start.
+     *
+     * @return true if no window size is configured
+     */
+    public boolean isMaximized() {
+        return windowSize == null;
+    }
+
+    /**
+     * Checks whether web fonts have to be blocked through the DevTools Protocol after the start.
+     *
+     * @return true if web fonts are blocked
+     */
+    public boolean isBlockFonts() {
+        return blockFonts;
+    }
+
+    /**
+     * Applies the profile to the options of Chrome or Edge.
+     *
+     * @param options Options of the browser to start
+     * @param browser Name of the browser, used in the user data directory template
+     * @return The user data directory claimed for the browser, to pass to {@link #bind(Path, WebDriver)}, or null
+     */
+    public Path apply(ChromiumOptions<?> options, String browser) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+        if (headless) {
+            options.addArguments("--headless=new");
+        }
+        if (windowSize != null) {
+            options.addArguments("--window-size=" + windowSize[0] + "," + windowSize[1]);
+        }
+        if (blockImages) {
+            Map<String, Object> prefs = new HashMap<>();
+            prefs.put("profile.managed_default_content_settings.images", 2);
+            options.setExperimentalOption("prefs", prefs);
+        }
+        if (disableBackgroundThrottling) {
+            options.addArguments("--disable-background-timer-throttling", "--disable-backgrounding-occluded-windows",
+                    "--disable-renderer-backgrounding");
+        }
+        if (disableExtensions) {
+            options.addArguments("--disable-extensions");
+        }
+        Path directory = claimUserDataDir(browser);
+        if (directory != null) {
+            options.addArguments("--user-data-dir=" + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Applies the profile to the options of Firefox. Firefox has no way to block font downloads, so blocked
+     * fonts only stop pages from using their own fonts.
+     *
+     * @param options Options of the browser to start
+     * @return The user data directory claimed for the browser, to pass to {@link #bind(Path, WebDriver)}, or null
+     */
+    public Path apply(FirefoxOptions options) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+        if (headless) {
+            options.addArguments("-headless");
+        }
+        if (windowSize != null) {
+            options.addArguments("-width", String.valueOf(windowSize[0]), "-height", String.valueOf(windowSize[1]));
+        }
+        if (blockImages) {
+            options.addPreference("permissions.default.image", 2);
+        }
+        if (blockFonts) {
+            options.addPreference("browser.display.use_document_fonts", 0);
+        }
+        if (disableBackgroundThrottling) {
+            options.addPreference("dom.min_background_timeout_value", 4);
+            options.addPreference("dom.timeout.enable_budget_timer_throttling", false);
+        }
+        Path directory = claimUserDataDir("firefox");
+        if (directory != null) {
+            try {
+                // Unlike Chromium, Firefox does not create a missing profile directory
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                bind(directory, null);
+                throw new UncheckedIOException("Not able to create the Firefox profile " + directory, e);
+            }
+            options.addArguments("-profile", directory.toString());
+        }
+        return directory;
+    }
+
+    /**
+     * Claims the lowest slot of the user data directory template that no running browser of this JVM or
+     * another process uses. Chromium keeps a SingletonLock link in a directory it runs on.
+     */
+    private Path claimUserDataDir(String browser) {
+        if (userDataDir.isEmpty()) {
+            return null;
+        }
+        String template = userDataDir.replace("{browser}", browser).replace("{profile}", name);
+        synchronized (USER_DATA_DIRS) {
+            for (int slot = 0; ; slot++) {
+                Path directory = Paths.get(template.replace("{slot}", String.valueOf(slot))).toAbsolutePath();
+                if (USER_DATA_DIRS.containsKey(directory) && isRunning(USER_DATA_DIRS.get(directory))) {
+                    continue;
+                }
+                if (Files.exists(directory.resolve("SingletonLock"), LinkOption.NOFOLLOW_LINKS) && !USER_DATA_DIRS.containsKey(directory)) {
+                    continue;
+                }
+                USER_DATA_DIRS.put(directory, null);
+                return directory;
+            }
+        }
+    }
+
+    /**
+     * Binds a claimed user data directory to the started browser, or releases it when the start failed.
+     *
+     * @param directory Directory returned by apply, may be null
+     * @param driver    Started browser, or null if the start failed
+     */
+    public static void bind(Path directory, WebDriver driver) {
+        if (directory == null) {
+            return;
+        }
+        synchronized (USER_DATA_DIRS) {
+            if (driver == null) {
+                USER_DATA_DIRS.remove(directory);
+            } else {
+                USER_DATA_DIRS.put(directory, new WeakReference<>(driver));
+            }
+        }
+    }
+
+    /**
+     * A directory claimed for a browser that is still starting (null) or whose session was not quit is in use.
+     */
+    private static boolean isRunning(WeakReference<WebDriver> reference) {
+        if (reference == null) {
+            return true;
+        }
+        WebDriver driver = reference.get();
+        return driver instanceof RemoteWebDriver && ((RemoteWebDriver) driver).getSessionId() != null;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (headless=" + headless + ", pageLoadStrategy=" + pageLoadStrategy
+                + ", blockImages=" + blockImages + ", blockFonts=" + blockFonts
+                + ", windowSize=" + (windowSize == null ? "maximize" : windowSize[0] + "x" + windowSize[1])
+                + ", disableBackgroundThrottling=" + disableBackgroundThrottling
+                + ", disableExtensions=" + disableExtensions
+                + (userDataDir.isEmpty() ? "" : ", userDataDir=" + userDataDir) + ")";
+    }
+}
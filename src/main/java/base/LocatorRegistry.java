@@ -0,0 +1,338 @@
+package base;
+
+import common.LatencyHistogram;
+import org.openqa.selenium.By;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles the XPath locators of the page objects into faster By strategies.
+ * <p>
+ * Browsers look elements up by id or CSS selector natively, while XPath is evaluated by a separate engine over
+ * the whole document. An XPath locator that only selects elements by tag and attributes anywhere in the page is
+ * rewritten, once per locator, to a By.id or By.cssSelector that matches exactly the same elements:
+ * <ul>
+ *     <li>//*[@id='x'] becomes By.id("x"), //input[@id='x'] becomes By.cssSelector("input#x")</li>
+ *     <li>[@attr='v'], [@attr], [contains(@attr,'v')] and [starts-with(@attr,'v')] become [attr="v"], [attr],
+ *     [attr*="v"] and [attr^="v"]; several predicates or "and" combine them</li>
+ * </ul>
+ * Anything else (paths with more than one step, positions, text(), functions, "or", unions, unknown or
+ * upper case names, values of attributes such as type that CSS compares case-insensitively) stays XPath and is
+ * reported by {@link #summary()}. The summary also gives the measured time of the find commands of every XPath
+ * locator, rewritten or not. Tags are limited to common HTML elements, since
+ * XPath name tests do not match SVG or MathML elements in HTML documents while CSS type selectors do.
+ * <p>
+ * The rewrite is switched off with the "locator.optimize" system property set to false.
+ */
+public final class LocatorRegistry {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("locator.optimize", "true"));
+    private static final String XPATH_PREFIX = "By.xpath: ";
+    private static final Set<String> HTML_TAGS = new HashSet<>(Arrays.asList(
+            "a", "article", "aside", "b", "body", "button", "dd", "div", "dl", "dt", "em", "fieldset", "footer",
+            "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "i", "iframe", "img", "input", "label", "legend",
+            "li", "main", "nav", "ol", "option", "p", "section", "select", "small", "span", "strong", "table",
+            "tbody", "td", "textarea", "th", "thead", "tr", "ul"));
+    /**
+     * Attributes whose values CSS matches case-insensitively in HTML documents, unlike XPath.
+     */
+    private static final Set<String> CASE_INSENSITIVE_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "accept", "accept-charset", "align", "alink", "axis", "bgcolor", "charset", "checked", "clear",
+            "codetype", "color", "compact", "declare", "defer", "dir", "direction", "disabled", "enctype", "face",
+            "frame", "hreflang", "http-equiv", "lang", "language", "link", "media", "method", "multiple", "nohref",
+            "noresize", "noshade", "nowrap", "readonly", "rel", "rev", "rules", "scope", "scrolling", "selected",
+            "shape", "target", "text", "type", "valign", "valuetype", "vlink"));
+
+    private static final Map<By, Compiled> COMPILED = new ConcurrentHashMap<>();
+
+    private LocatorRegistry() {
+    }
+
+    /**
+     * Returns the locator to look an element up with: the compiled equivalent of a simple XPath locator, or the
+     * locator itself. Every locator is compiled once.
+     *
+     * @param locator Locator declared by a page object
+     * @return Locator matching the same elements
+     */
+    public static By optimize(By locator) {
+        if (!ENABLED || !(locator instanceof By.ByXPath)) {
+            return locator;
+        }
+        return COMPILED.computeIfAbsent(locator, Compiled::new).optimized;
+    }
+
+    /**
+     * Records the time the find command of an XPath locator took, through its compiled locator.
+     *
+     * @param locator Locator declared by the page object, as passed to {@link #optimize(By)}
+     * @param nanos   Duration of the find command
+     */
+    public static void recordLookup(By locator, long nanos) {
+        if (!ENABLED || !(locator instanceof By.ByXPath)) {
+            return;
+        }
+        Compiled compiled = COMPILED.get(locator);
+        if (compiled != null) {
+            compiled.lookups.recordNanos(nanos);
+        }
+    }
+
+    /**
+     * Returns the XPath locators that were rewritten and the ones that were not, with the measured time of
+     * their find commands.
+     *
+     * @return Summary for the suite log
+     */
+    public static String summary() {
+        if (!ENABLED) {
+            return "Locators: optimization disabled";
+        }
+        List<Compiled> optimized = new ArrayList<>();
+        List<Compiled> unoptimized = new ArrayList<>();
+        for (Compiled compiled : COMPILED.values()) {
+            (compiled.reason == null ? optimized : unoptimized).add(compiled);
+        }
+        StringBuilder summary = new StringBuilder(String.format("Locators: xpath=%d optimized=%d unoptimized=%d",
+                COMPILED.size(), optimized.size(), unoptimized.size()));
+        for (Compiled compiled : optimized) {
+            summary.append(String.format("%n  %s -> %s %s", compiled.xpath, compiled.optimized, lookups(compiled)));
+        }
+        unoptimized.sort((a, b) -> Double.compare(b.lookups.getMeanMicros() * b.lookups.getCount(),
+                a.lookups.getMeanMicros() * a.lookups.getCount()));
+        for (Compiled compiled : unoptimized) {
+            summary.append(String.format("%n  %s not optimized (%s) %s", compiled.xpath, compiled.reason, lookups(compiled)));
+        }
+        return summary.toString();
+    }
+
+    private static String lookups(Compiled compiled) {
+        LatencyHistogram lookups = compiled.lookups;
+        return String.format("finds=%d avgMs=%.1f p95Ms=%.1f maxMs=%.1f", lookups.getCount(),
+                lookups.getMeanMicros() / 1000.0, lookups.getPercentileMicros(95) / 1000.0, lookups.getMaxMicros() / 1000.0);
+    }
+
+    /**
+     * Result of compiling one XPath locator, with the time of its find commands.
+     */
+    private static final class Compiled {
+
+        private final String xpath;
+        private final By optimized;
+        private final String reason;
+        private final LatencyHistogram lookups = new LatencyHistogram();
+
+        Compiled(By locator) {
+            // The built-in locators print as "By.<strategy>: <value>"
+            String description = locator.toString();
+            this.xpath = description.startsWith(XPATH_PREFIX) ? description.substring(XPATH_PREFIX.length()) : description;
+            By compiled = null;
+            String failure = null;
+            try {
+                compiled = new XPathCompiler(xpath).compile();
+            } catch (IllegalArgumentException e) {
+                failure = e.getMessage();
+            }
+            this.optimized = compiled == null ? locator : compiled;
+            this.reason = failure;
+        }
+    }
+
+    /**
+     * Parser of the XPath subset "//tag[predicate and ...][...]", throwing IllegalArgumentException with the
+     * reason for anything outside of it.
+     */
+    private static final class XPathCompiler {
+
+        private final String xpath;
+        private int position;
+        private String id;
+        private final StringBuilder attributes = new StringBuilder();
+
+        XPathCompiler(String xpath) {
+            this.xpath = xpath.trim();
+        }
+
+        By compile() {
+            if (!xpath.startsWith("//") || xpath.startsWith("///")) {
+                throw new IllegalArgumentException("not a // path");
+            }
+            position = 2;
+            String tag = xpath.startsWith("*", position) ? "*" : name();
+            if (tag.equals("*")) {
+                position++;
+            } else if (!HTML_TAGS.contains(tag)) {
+                throw new IllegalArgumentException("tag " + tag);
+            }
+            skipSpaces();
+            if (position == xpath.length() || xpath.charAt(position) != '[') {
+                throw new IllegalArgumentException(position == xpath.length() ? "no predicate" : "more than one step");
+            }
+            while (position < xpath.length()) {
+                expect('[');
+                predicate();
+                while (keyword("and")) {
+                    predicate();
+                }
+                expect(']');
+                skipSpaces();
+            }
+            if (id != null && attributes.length() == 0 && tag.equals("*")) {
+                return By.id(id);
+            }
+            StringBuilder css = new StringBuilder(tag.equals("*") && id != null ? "" : tag);
+            if (id != null) {
+                if (isIdentifier(id)) {
+                    css.append('#').append(id);
+                } else {
+                    css.append("[id=").append(cssString(id)).append(']');
+                }
+            }
+            return By.cssSelector(css.append(attributes).toString());
+        }
+
+        private void predicate() {
+            skipSpaces();
+            if (keyword("contains")) {
+                function("*=");
+            } else if (keyword("starts-with")) {
+                function("^=");
+            } else {
+                String attribute = attribute();
+                skipSpaces();
+                if (position < xpath.length() && xpath.charAt(position) == '=') {
+                    position++;
+                    String value = valueOf(attribute);
+                    if (attribute.equals("id") && id == null) {
+                        id = value;
+                    } else {
+                        attributes.append('[').append(attribute).append('=').append(cssString(value)).append(']');
+                    }
+                } else {
+                    attributes.append('[').append(attribute).append(']');
+                }
+            }
+            skipSpaces();
+        }
+
+        private void function(String operator) {
+            expect('(');
+            String attribute = attribute();
+            expect(',');
+            String value = valueOf(attribute);
+            expect(')');
+            if (value.isEmpty()) {
+                // contains(@a,'') is true for every element with the attribute, [a*=""] for none
+                attributes.append('[').append(attribute).append(']');
+            } else {
+                attributes.append('[').append(attribute).append(operator).append(cssString(value)).append(']');
+            }
+        }
+
+        private String attribute() {
+            skipSpaces();
+            if (position == xpath.length() || xpath.charAt(position) != '@') {
+                throw new IllegalArgumentException("predicate is not an attribute test");
+            }
+            position++;
+            return name();
+        }
+
+        private String name() {
+            int start = position;
+            while (position < xpath.length() && isNameChar(xpath.charAt(position), position == start)) {
+                position++;
+            }
+            if (position == start) {
+                throw new IllegalArgumentException("unsupported expression at " + start);
+            }
+            return xpath.substring(start, position);
+        }
+
+        private static boolean isNameChar(char c, boolean first) {
+            return (c >= 'a' && c <= 'z') || (!first && ((c >= '0' && c <= '9') || c == '-' || c == '_'));
+        }
+
+        private String valueOf(String attribute) {
+            if (CASE_INSENSITIVE_ATTRIBUTES.contains(attribute)) {
+                throw new IllegalArgumentException("CSS compares @" + attribute + " case-insensitively");
+            }
+            return literal();
+        }
+
+        private String literal() {
+            skipSpaces();
+            char quote = position < xpath.length() ? xpath.charAt(position) : 0;
+            if (quote != '\'' && quote != '"') {
+                throw new IllegalArgumentException("comparison with a non-literal");
+            }
+            int end = xpath.indexOf(quote, position + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("unterminated literal");
+            }
+            String value = xpath.substring(position + 1, end);
+            position = end + 1;
+            return value;
+        }
+
+        /**
+         * Consumes a keyword followed by a space or bracket. A keyword that is the start of a longer name is
+         * left in place.
+         */
+        private boolean keyword(String keyword) {
+            skipSpaces();
+            int end = position + keyword.length();
+            if (!xpath.startsWith(keyword, position) || end >= xpath.length() || isNameChar(xpath.charAt(end), false)) {
+                return false;
+            }
+            position = end;
+            return true;
+        }
+
+        private void expect(char c) {
+            skipSpaces();
+            if (position == xpath.length() || xpath.charAt(position) != c) {
+                throw new IllegalArgumentException("unsupported expression at " + position);
+            }
+            position++;
+        }
+
+        private void skipSpaces() {
+            while (position < xpath.length() && Character.isWhitespace(xpath.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isIdentifier(String value) {
+            if (value.isEmpty() || Character.isDigit(value.charAt(0)) || value.startsWith("-")) {
+                return false;
+            }
+            for (char c : value.toCharArray()) {
+                if (c > 127 || (!Character.isLetterOrDigit(c) && c != '-' && c != '_')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String cssString(String value) {
+            StringBuilder quoted = new StringBuilder("\"");
+            for (char c : value.toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    quoted.append('\\').append(c);
+                } else if (c == '\n' || c == '\r' || c == '\f') {
+                    quoted.append('\\').append(Integer.toHexString(c)).append(' ');
+                } else {
+                    quoted.append(c);
+                }
+            }
+            return quoted.append('"').toString();
+        }
+    }
+}
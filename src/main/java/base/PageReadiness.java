@@ -0,0 +1,311 @@
+package base;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.json.JsonInput;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects when a page is ready: the document is loaded, no network requests are in flight and the DOM has
+ * not changed for a quiet window ("readiness.quietMillis" system property, default 500).
+ * <p>
+ * Network requests are tracked through the Chrome DevTools Protocol with raw Network events, so the tracking
+ * does not depend on a DevTools version. Browsers without DevTools, such as Firefox, only wait for the
+ * document and the DOM. DOM changes are recorded by a MutationObserver that stays in the page; on a new
+ * document the last change is taken to be the end of its load event, so checking a page that is already quiet
+ * costs a single script call. Requests open for longer than
+ * "readiness.requestTimeoutMillis" (default 10000), such as long polling, no longer hold the page back.
+ * <p>
+ * One instance is kept per browser, see {@link #forDriver(WebDriver)}, and the time to ready of every
+ * navigation is recorded per page, see {@link #summary()}.
+ */
+public final class PageReadiness {
+
+    private static final long QUIET_MILLIS = Long.getLong("readiness.quietMillis", 500);
+    private static final long REQUEST_TIMEOUT_MILLIS = Long.getLong("readiness.requestTimeoutMillis", 10_000);
+    private static final long SCRIPT_CHUNK_MILLIS = Long.getLong("wait.observer.chunkMillis", 25_000);
+    private static final Duration TIMEOUT = Duration.ofSeconds(Long.getLong("readiness.timeoutSeconds", 30));
+
+    private static final String DOM_QUIET_SCRIPT =
+            "var quiet = arguments[0], timeout = arguments[1], done = arguments[arguments.length - 1];"
+                    + "var p = window.__pageReadiness;"
+                    + "if (!p) {"
+                    // Changes before the observer existed are not known; a loaded document is taken to have
+                    // settled when its load event ended, so a page that is already quiet returns right away
+                    + "  var nav = performance.getEntriesByType ? performance.getEntriesByType('navigation')[0] : null;"
+                    + "  var t = performance.timing;"
+                    + "  var loaded = nav ? Math.max(nav.domContentLoadedEventEnd, nav.loadEventEnd)"
+                    + "    : (t.loadEventEnd > 0 ? t.loadEventEnd - t.navigationStart : 0);"
+                    + "  var settled = document.readyState === 'complete' && loaded > 0;"
+                    + "  p = window.__pageReadiness = { last: settled ? Math.min(loaded, performance.now()) : performance.now() };"
+                    + "  new MutationObserver(function () { p.last = performance.now(); })"
+                    + "    .observe(document, { subtree: true, childList: true, attributes: true, characterData: true });"
+                    + "}"
+                    + "var start = performance.now();"
+                    + "(function check() {"
+                    + "  var now = performance.now(), page = location.origin + location.pathname;"
+                    + "  var complete = document.readyState === 'complete';"
+                    + "  if (complete && now - p.last >= quiet) { done({ ready: true, page: page }); return; }"
+                    + "  if (now - start >= timeout) { done({ ready: false, page: page }); return; }"
+                    + "  var next = complete ? Math.max(16, quiet - (now - p.last)) : 50;"
+                    + "  setTimeout(check, Math.min(next, timeout - (now - start)));"
+                    + "})();";
+
+    private static final Map<WebDriver, PageReadiness> INSTANCES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final Map<String, LongAdder[]> PAGES = new ConcurrentHashMap<>();
+    private static final LongAdder NAVIGATIONS = new LongAdder();
+    private static final LongAdder READY_NANOS = new LongAdder();
+    private static final LongAdder TIMEOUTS = new LongAdder();
+    private static final LongAccumulator MAX_READY_NANOS = new LongAccumulator(Math::max, 0);
+
+    private final WeakReference<WebDriver> driver;
+    private final Map<String, Long> inFlight = new ConcurrentHashMap<>();
+    private final Object networkMonitor = new Object();
+    private volatile long lastNetworkActivity = System.nanoTime();
+    private final boolean networkTracked;
+
+    private PageReadiness(WebDriver driver) {
+        this.driver = new WeakReference<>(driver);
+        this.networkTracked = trackNetwork(driver);
+    }
+
+    /**
+     * Get the readiness tracker of a browser, starting the network tracking on first use. Call it before
+     * navigating so the requests of the navigation are seen.
+     *
+     * @param driver The WebDriver of the browser.
+     * @return The tracker of the browser.
+     */
+    public static PageReadiness forDriver(WebDriver driver) {
+        synchronized (INSTANCES) {
+            return INSTANCES.computeIfAbsent(driver, PageReadiness::new);
+        }
+    }
+
+    /**
+     * Check whether network requests are tracked for this browser.
+     *
+     * @return true if the browser supports DevTools network tracking.
+     */
+    public boolean isNetworkTracked() {
+        return networkTracked;
+    }
+
+    /**
+     * Wait until the page is ready, for at most "readiness.timeoutSeconds" (default 30).
+     *
+     * @return true if the page became ready, false if the timeout expired first.
+     */
+    public boolean waitUntilReady() {
+        return waitUntilReady(TIMEOUT);
+    }
+
+    /**
+     * Wait until the page is loaded, the network is idle and the DOM is stable for the quiet window.
+     * A page that does not become ready within the timeout is reported and the test continues.
+     *
+     * @param timeout The maximum duration to wait.
+     * @return true if the page became ready, false if the timeout expired first.
+     */
+    public boolean waitUntilReady(Duration timeout) {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        String page = "unknown";
+        boolean ready = false;
+        try {
+            while (!ready && System.nanoTime() < deadline) {
+                if (!awaitNetworkIdle(deadline)) {
+                    break;
+                }
+                long networkActivity = lastNetworkActivity;
+                Map<?, ?> dom = awaitDomQuiet(deadline);
+                if (dom == null) {
+                    continue;
+                }
+                page = String.valueOf(dom.get("page"));
+                ready = Boolean.TRUE.equals(dom.get("ready")) && networkActivity == lastNetworkActivity
+                        && inFlightCount() == 0;
+            }
+        } finally {
+            record(page, System.nanoTime() - start, ready);
+        }
+        if (!ready) {
+            System.out.println("Page " + page + " not ready after " + timeout.getSeconds() + " second(s), "
+                    + inFlightCount() + " request(s) still in flight");
+        }
+        return ready;
+    }
+
+    /**
+     * Builds a summary of the recorded navigations, with the time to ready per page.
+     *
+     * @return Summary with navigations, average and maximum time to ready
+     */
+    public static String summary() {
+        long navigations = NAVIGATIONS.sum();
+        StringBuilder summary = new StringBuilder(String.format("Page readiness: navigations=%d avgMs=%.1f maxMs=%d timeouts=%d",
+                navigations, navigations == 0 ? 0 : READY_NANOS.sum() / 1_000_000.0 / navigations,
+                MAX_READY_NANOS.get() / 1_000_000, TIMEOUTS.sum()));
+        for (Map.Entry<String, LongAdder[]> entry : new TreeMap<>(PAGES).entrySet()) {
+            long count = entry.getValue()[0].sum();
+            summary.append(String.format("%n  %-60s navigations=%-6d avgMs=%.1f",
+                    entry.getKey(), count, count == 0 ? 0 : entry.getValue()[1].sum() / 1_000_000.0 / count));
+        }
+        return summary.toString();
+    }
+
+    private boolean trackNetwork(WebDriver driver) {
+        if (!(driver instanceof HasDevTools)) {
+            return false;
+        }
+        try {
+            Optional<DevTools> maybeDevTools = ((HasDevTools) driver).maybeGetDevTools();
+            if (!maybeDevTools.isPresent()) {
+                return false;
+            }
+            DevTools devTools = maybeDevTools.get();
+            devTools.createSessionIfThereIsNotOne();
+            devTools.addListener(new Event<>("Network.requestWillBeSent", PageReadiness::readRequest), request -> {
+                if (!"EventSource".equals(request[1]) && !"WebSocket".equals(request[1])) {
+                    inFlight.put(request[0], System.nanoTime());
+                    networkActivity();
+                }
+            });
+            devTools.addListener(new Event<>("Network.loadingFinished", PageReadiness::readRequest), this::finished);
+            devTools.addListener(new Event<>("Network.loadingFailed", PageReadiness::readRequest), this::finished);
+            devTools.send(new Command<>("Network.enable", Collections.emptyMap()));
+            return true;
+        } catch (WebDriverException e) {
+            System.out.println("Network tracking not available, page readiness uses the DOM only: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void finished(String[] request) {
+        if (inFlight.remove(request[0]) != null) {
+            networkActivity();
+        }
+    }
+
+    private void networkActivity() {
+        lastNetworkActivity = System.nanoTime();
+        synchronized (networkMonitor) {
+            networkMonitor.notifyAll();
+        }
+    }
+
+    private int inFlightCount() {
+        long stale = System.nanoTime() - REQUEST_TIMEOUT_MILLIS * 1_000_000;
+        inFlight.values().removeIf(started -> started < stale);
+        return inFlight.size();
+    }
+
+    /**
+     * Wait without browser calls until no request was in flight for the quiet window.
+     *
+     * @return false if the deadline passed first.
+     */
+    private boolean awaitNetworkIdle(long deadline) {
+        if (!networkTracked) {
+            return true;
+        }
+        long quietNanos = QUIET_MILLIS * 1_000_000;
+        synchronized (networkMonitor) {
+            while (true) {
+                long now = System.nanoTime();
+                long idleAt = inFlightCount() == 0 ? lastNetworkActivity + quietNanos : now + quietNanos;
+                if (now >= idleAt) {
+                    return true;
+                }
+                if (now >= deadline) {
+                    return false;
+                }
+                try {
+                    long waitNanos = Math.min(idleAt, deadline) - now;
+                    networkMonitor.wait(Math.max(1, waitNanos / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait in the page until the document is complete and the DOM is quiet.
+     *
+     * @return The script result with "ready" and "page", or null if the page navigated during the check.
+     */
+    private Map<?, ?> awaitDomQuiet(long deadline) {
+        long remainingMillis = Math.max(0, (deadline - System.nanoTime()) / 1_000_000);
+        WebDriver browser = driver.get();
+        if (browser == null) {
+            throw new IllegalStateException("The browser of this readiness tracker is gone");
+        }
+        try {
+            Object result = ((JavascriptExecutor) browser).executeAsyncScript(DOM_QUIET_SCRIPT, QUIET_MILLIS,
+                    Math.min(remainingMillis, SCRIPT_CHUNK_MILLIS));
+            return result instanceof Map ? (Map<?, ?>) result : null;
+        } catch (WebDriverException e) {
+            // The document was replaced during the check; give the next one a moment to start
+            synchronized (networkMonitor) {
+                try {
+                    networkMonitor.wait(Math.min(50, Math.max(1, remainingMillis)));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static void record(String page, long nanos, boolean ready) {
+        NAVIGATIONS.increment();
+        READY_NANOS.add(nanos);
+        MAX_READY_NANOS.accumulate(nanos);
+        if (!ready) {
+            TIMEOUTS.increment();
+        }
+        LongAdder[] totals = PAGES.computeIfAbsent(page, p -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        totals[0].increment();
+        totals[1].add(nanos);
+    }
+
+    /**
+     * Read the request id and resource type of a Network event.
+     */
+    private static String[] readRequest(JsonInput input) {
+        String[] request = new String[2];
+        input.beginObject();
+        while (input.hasNext()) {
+            switch (input.nextName()) {
+                case "requestId":
+                    request[0] = input.nextString();
+                    break;
+                case "type":
+                    request[1] = input.nextString();
+                    break;
+                default:
+                    input.skipValue();
+            }
+        }
+        input.endObject();
+        return request;
+    }
+}
@@ -0,0 +1,335 @@
+package base;
+
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cache of signed-in browser state, so a user signs in through the UI once per environment and later tests
+ * restore the session instead.
+ * <p>
+ * After a real sign-in, {@link #capture} saves the cookies of all domains (through the Chrome DevTools
+ * Protocol where available, otherwise the cookies of the current page) and the local and session storage of
+ * the page. {@link #restore} puts that state into another browser, loads the signed-in page and checks it with
+ * a probe; when the probe fails the entry is dropped, the browser is cleaned up and the caller signs in again.
+ * <p>
+ * Entries expire after "session.cache.ttlMinutes" (default 30) or when the first captured cookie expires,
+ * whichever comes first. The cache is kept in memory only and is turned off with "session.cache.enabled" set
+ * to false.
+ */
+public final class SessionStateCache {
+
+    private static final SessionStateCache INSTANCE = new SessionStateCache(
+            Boolean.parseBoolean(System.getProperty("session.cache.enabled", "true")),
+            TimeUnit.MINUTES.toMillis(Long.getLong("session.cache.ttlMinutes", 30)));
+
+    private static final String CAPTURE_STORAGE_SCRIPT =
+            "function read(s) { var r = {}; for (var i = 0; i < s.length; i++) { var k = s.key(i); r[k] = s.getItem(k); } return r; }"
+                    + "return { origin: location.origin, url: location.href,"
+                    + "  local: read(window.localStorage), session: read(window.sessionStorage) };";
+    private static final String RESTORE_STORAGE_SCRIPT =
+            "var local = arguments[0], session = arguments[1];"
+                    + "Object.keys(local).forEach(function (k) { window.localStorage.setItem(k, local[k]); });"
+                    + "Object.keys(session).forEach(function (k) { window.sessionStorage.setItem(k, session[k]); });";
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "try { window.localStorage.clear(); window.sessionStorage.clear(); } catch (e) {}";
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final LongAdder captures = new LongAdder();
+    private final LongAdder restores = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder loginNanos = new LongAdder();
+    private final LongAdder restoreNanos = new LongAdder();
+
+    /**
+     * Constructor to initialize a cache with its own settings.
+     *
+     * @param enabled   false to never restore or capture sessions
+     * @param ttlMillis Time in milliseconds a captured session is restored for
+     */
+    public SessionStateCache(boolean enabled, long ttlMillis) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Returns the cache shared by the whole suite.
+     *
+     * @return The suite-wide cache
+     */
+    public static SessionStateCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the origin of a URL, which identifies the environment a session belongs to.
+     *
+     * @param url Absolute URL, e.g. the current URL of the browser
+     * @return Scheme, host and port of the URL, e.g. https://www.amazon.in
+     */
+    public static String originOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            return uri.getScheme() + "://" + uri.getAuthority();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return String.valueOf(url);
+        }
+    }
+
+    /**
+     * Saves the signed-in state of the browser for the user and environment.
+     *
+     * @param driver       Browser showing a page of the signed-in session
+     * @param user         User the session belongs to
+     * @param environment  Environment the session belongs to
+     * @param loginStarted System.nanoTime() when the sign-in started, to report the time restores save
+     */
+    public void capture(WebDriver driver, String user, String environment, long loginStarted) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> storage = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_STORAGE_SCRIPT);
+            List<Map<String, Object>> cookies = readCookies(driver);
+            long expiresAt = System.currentTimeMillis() + ttlMillis;
+            for (Map<String, Object> cookie : cookies) {
+                Object expires = cookie.get("expires");
+                if (expires instanceof Number && ((Number) expires).doubleValue() > 0) {
+                    expiresAt = Math.min(expiresAt, (long) (((Number) expires).doubleValue() * 1000));
+                }
+            }
+            snapshots.put(key(user, environment), new Snapshot(String.valueOf(storage.get("origin")),
+                    String.valueOf(storage.get("url")), cookies, stringMap(storage.get("local")),
+                    stringMap(storage.get("session")), expiresAt));
+            captures.increment();
+            loginNanos.add(System.nanoTime() - loginStarted);
+        } catch (WebDriverException | ClassCastException e) {
+            System.out.println("Not able to capture the session of " + user + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Restores the saved session of the user and environment into the browser and checks it with the probe.
+     * When no valid session is saved, the browser is left as it is; when the probe fails, the saved session is
+     * dropped, the restored state is cleared and the browser is sent back to the page it showed before.
+     *
+     * @param driver      Browser to restore the session into
+     * @param user        User the session belongs to
+     * @param environment Environment the session belongs to
+     * @param signedIn    Probe checking on the restored page that the user is signed in
+     * @return true if the user is signed in
+     */
+    public boolean restore(WebDriver driver, String user, String environment, Predicate<WebDriver> signedIn) {
+        if (!enabled) {
+            return false;
+        }
+        String key = key(user, environment);
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null || snapshot.expiresAt <= System.currentTimeMillis()) {
+            snapshots.remove(key);
+            misses.increment();
+            return false;
+        }
+        long started = System.nanoTime();
+        String previousUrl = null;
+        try {
+            previousUrl = driver.getCurrentUrl();
+            if (!snapshot.origin.equals(originOf(previousUrl))) {
+                driver.get(snapshot.url);
+            }
+            writeCookies(driver, snapshot);
+            ((JavascriptExecutor) driver).executeScript(RESTORE_STORAGE_SCRIPT, snapshot.local, snapshot.session);
+            driver.get(snapshot.url);
+            PageReadiness.forDriver(driver).waitUntilReady();
+            if (signedIn.test(driver)) {
+                restores.increment();
+                restoreNanos.add(System.nanoTime() - started);
+                return true;
+            }
+        } catch (WebDriverException e) {
+            System.out.println("Not able to restore the session of " + user + ": " + e.getMessage());
+        }
+        snapshots.remove(key);
+        rejected.increment();
+        clear(driver, previousUrl);
+        return false;
+    }
+
+    /**
+     * Drops the saved session of the user and environment, e.g. after the user signed out.
+     *
+     * @param user        User the session belongs to
+     * @param environment Environment the session belongs to
+     */
+    public void invalidate(String user, String environment) {
+        snapshots.remove(key(user, environment));
+    }
+
+    /**
+     * Returns the usage of the suite-wide cache, to be printed at the end of the suite.
+     *
+     * @return One line with the captured, restored, missed and rejected sessions and the time saved
+     */
+    public static String summary() {
+        SessionStateCache cache = INSTANCE;
+        long captured = cache.captures.sum();
+        long restored = cache.restores.sum();
+        double loginMillis = captured == 0 ? 0 : cache.loginNanos.sum() / 1_000_000.0 / captured;
+        double restoreMillis = restored == 0 ? 0 : cache.restoreNanos.sum() / 1_000_000.0 / restored;
+        return String.format("Session cache: captured=%d restored=%d misses=%d rejected=%d avgLoginMs=%.1f avgRestoreMs=%.1f estimatedSavedMs=%.0f",
+                captured, restored, cache.misses.sum(), cache.rejected.sum(), loginMillis, restoreMillis,
+                captured == 0 ? 0 : restored * Math.max(0, loginMillis - restoreMillis));
+    }
+
+    private static String key(String user, String environment) {
+        return user + '\n' + environment;
+    }
+
+    /**
+     * Reads all cookies of the browser through DevTools, or the cookies of the current page without it.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> readCookies(WebDriver driver) {
+        if (driver instanceof HasCdp) {
+            try {
+                Object cookies = ((HasCdp) driver).executeCdpCommand("Network.getAllCookies", Collections.emptyMap()).get("cookies");
+                List<Map<String, Object>> result = new ArrayList<>();
+                for (Map<String, Object> cookie : (List<Map<String, Object>>) cookies) {
+                    result.add(cookieParam(cookie));
+                }
+                return result;
+            } catch (WebDriverException e) {
+                // Fall back to the cookies WebDriver can see
+            }
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Cookie cookie : driver.manage().getCookies()) {
+            Map<String, Object> param = new LinkedHashMap<>();
+            param.put("name", cookie.getName());
+            param.put("value", cookie.getValue());
+            param.put("domain", cookie.getDomain());
+            param.put("path", cookie.getPath());
+            param.put("secure", cookie.isSecure());
+            param.put("httpOnly", cookie.isHttpOnly());
+            if (cookie.getSameSite() != null) {
+                param.put("sameSite", cookie.getSameSite());
+            }
+            if (cookie.getExpiry() != null) {
+                param.put("expires", cookie.getExpiry().getTime() / 1000.0);
+            }
+            result.add(param);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the fields of a DevTools cookie that Network.setCookies accepts.
+     */
+    private static Map<String, Object> cookieParam(Map<String, Object> cookie) {
+        Map<String, Object> param = new LinkedHashMap<>();
+        for (String field : new String[]{"name", "value", "domain", "path", "secure", "httpOnly", "sameSite"}) {
+            if (cookie.get(field) != null) {
+                param.put(field, cookie.get(field));
+            }
+        }
+        if (!Boolean.TRUE.equals(cookie.get("session")) && cookie.get("expires") instanceof Number) {
+            param.put("expires", cookie.get("expires"));
+        }
+        return param;
+    }
+
+    private static void writeCookies(WebDriver driver, Snapshot snapshot) {
+        if (driver instanceof HasCdp) {
+            try {
+                Map<String, Object> params = new HashMap<>();
+                params.put("cookies", snapshot.cookies);
+                ((HasCdp) driver).executeCdpCommand("Network.setCookies", params);
+                return;
+            } catch (WebDriverException e) {
+                // Fall back to adding the cookies of the current page
+            }
+        }
+        for (Map<String, Object> param : snapshot.cookies) {
+            Object expires = param.get("expires");
+            try {
+                driver.manage().addCookie(new Cookie.Builder(String.valueOf(param.get("name")), String.valueOf(param.get("value")))
+                        .domain((String) param.get("domain"))
+                        .path((String) param.get("path"))
+                        .isSecure(Boolean.TRUE.equals(param.get("secure")))
+                        .isHttpOnly(Boolean.TRUE.equals(param.get("httpOnly")))
+                        .sameSite((String) param.get("sameSite"))
+                        .expiresOn(expires instanceof Number ? new Date((long) (((Number) expires).doubleValue() * 1000)) : null)
+                        .build());
+            } catch (WebDriverException e) {
+                // WebDriver only sets cookies of the current page's domain; the probe decides if the rest mattered
+            }
+        }
+    }
+
+    private static void clear(WebDriver driver, String previousUrl) {
+        try {
+            ((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE_SCRIPT);
+            driver.manage().deleteAllCookies();
+            if (driver instanceof HasCdp) {
+                ((HasCdp) driver).executeCdpCommand("Network.clearBrowserCookies", Collections.emptyMap());
+            }
+            if (previousUrl != null) {
+                driver.get(previousUrl);
+            }
+        } catch (WebDriverException e) {
+            System.out.println("Not able to clear the rejected session: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> stringMap(Object value) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                result.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The state of one signed-in session.
+     */
+    private static final class Snapshot {
+        private final String origin;
+        private final String url;
+        private final List<Map<String, Object>> cookies;
+        private final Map<String, String> local;
+        private final Map<String, String> session;
+        private final long expiresAt;
+
+        private Snapshot(String origin, String url, List<Map<String, Object>> cookies, Map<String, String> local,
+                         Map<String, String> session, long expiresAt) {
+            this.origin = origin;
+            this.url = url;
+            this.cookies = cookies;
+            this.local = local;
+            this.session = session;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package common;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.markuputils.MarkupHelper;
+import com.aventstack.extentreports.service.ExtentService;
+import org.openqa.selenium.By;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebDriver listener and recorder for the latency of page actions, split into phases.
+ * <p>
+ * Page actions call {@link #begin()} when they start and {@link #end(String, By, long)} when they are done.
+ * While an action runs, the listener adds the time of every WebDriver command to a phase of the thread:
+ * "find" for element lookups, "script" for JavaScript calls and "action" for element interactions such as
+ * click, sendKeys, clear and pointer actions. The rest of the action's time is "wait": polling sleeps and
+ * the state checks made while waiting. Nested actions count towards the outermost one.
+ * <p>
+ * Latencies go into {@link LatencyHistogram}s per action and locator description, so page objects created
+ * per scenario share them. Recording only updates counters, so it can stay enabled; with the
+ * "perf.actionMetrics" system property set to false the listener is not registered and nothing is recorded or
+ * exported. Every action, nested or not, is also recorded as a span of the {@link TraceRecorder} when tracing
+ * is enabled.
+ */
+public class ActionMetrics implements WebDriverListener {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("perf.actionMetrics", "true"));
+
+    /**
+     * The phases of an action, in the order of the thread accumulators.
+     */
+    private static final String[] PHASES = {"total", "wait", "find", "script", "action"};
+    private static final int WAIT = 1;
+    private static final int FIND = 2;
+    private static final int SCRIPT = 3;
+    private static final int ACTION = 4;
+
+    /**
+     * Per thread: [0] action depth, [1] start of the current command, [2..4] find, script and action nanos.
+     */
+    private static final ThreadLocal<long[]> STATE = ThreadLocal.withInitial(() -> new long[5]);
+    private static final Map<String, Histograms> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        long[] state = STATE.get();
+        if (state[0] > 0) {
+            state[1] = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        commandDone(method);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        commandDone(method);
+    }
+
+    private static void commandDone(Method method) {
+        long[] state = STATE.get();
+        if (state[0] == 0 || state[1] == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - state[1];
+        state[1] = 0;
+        int phase = phaseOf(method.getName());
+        if (phase != WAIT) {
+            state[phase] += elapsed;
+        }
+    }
+
+    private static int phaseOf(String command) {
+        switch (command) {
+            case "findElement":
+            case "findElements":
+                return FIND;
+            case "executeScript":
+            case "executeAsyncScript":
+                return SCRIPT;
+            case "click":
+            case "sendKeys":
+            case "clear":
+            case "submit":
+            case "perform":
+            case "resetInputState":
+                return ACTION;
+            default:
+                return WAIT;
+        }
+    }
+
+    /**
+     * Check whether action metrics are recorded, see the "perf.actionMetrics" system property.
+     *
+     * @return true if actions are recorded
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Starts timing an action on the current thread.
+     *
+     * @return The start time to pass to {@link #end(String, By, long)}
+     */
+    public static long begin() {
+        if (!ENABLED) {
+            return System.nanoTime();
+        }
+        long[] state = STATE.get();
+        if (state[0]++ == 0) {
+            state[FIND] = 0;
+            state[SCRIPT] = 0;
+            state[ACTION] = 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Finishes timing an action and records it, unless it ran inside another action. Call it from a finally
+     * block so failed actions are recorded too.
+     *
+     * @param action  Name of the page action
+     * @param locator Locator the action worked on
+     * @param started Start time returned by {@link #begin()}
+     */
+    public static void end(String action, By locator, long started) {
+        long ended = System.nanoTime();
+        if (TraceRecorder.isEnabled()) {
+            TraceRecorder.span(action + " " + locator, "action", started, ended);
+        }
+        if (!ENABLED) {
+            return;
+        }
+        long[] state = STATE.get();
+        if (--state[0] > 0) {
+            return;
+        }
+        state[0] = 0;
+        long total = ended - started;
+        Histograms histograms = histograms(action, locator);
+        histograms.phases[0].recordNanos(total);
+        histograms.phases[WAIT].recordNanos(Math.max(0, total - state[FIND] - state[SCRIPT] - state[ACTION]));
+        histograms.phases[FIND].recordNanos(state[FIND]);
+        histograms.phases[SCRIPT].recordNanos(state[SCRIPT]);
+        histograms.phases[ACTION].recordNanos(state[ACTION]);
+    }
+
+    private static Histograms histograms(String action, By locator) {
+        String locatorName = String.valueOf(locator);
+        return HISTOGRAMS.computeIfAbsent(action + '\t' + locatorName, key -> new Histograms(action, locatorName));
+    }
+
+    /**
+     * Writes the recorded histograms as "action-metrics.json" and "action-metrics.csv" to the directory.
+     *
+     * @param directory The directory to write to, e.g. test-output/Metrics
+     * @throws IOException if the files cannot be written
+     */
+    public static void export(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Map<String, Object>> rows = rows();
+        Files.write(directory.resolve("action-metrics.json"), new Json().toJson(rows).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder csv = new StringBuilder("action,locator,phase,count,meanMs,p50Ms,p95Ms,p99Ms,maxMs\n");
+        for (Map<String, Object> row : rows) {
+            csv.append(csvValue(row.get("action"))).append(',').append(csvValue(row.get("locator"))).append(',')
+                    .append(row.get("phase")).append(',').append(row.get("count")).append(',')
+                    .append(row.get("meanMs")).append(',').append(row.get("p50Ms")).append(',')
+                    .append(row.get("p95Ms")).append(',').append(row.get("p99Ms")).append(',')
+                    .append(row.get("maxMs")).append('\n');
+        }
+        Files.write(directory.resolve("action-metrics.csv"), csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the recorded histograms to the "metrics.dir" system property directory (default
+     * test-output/Metrics) and adds the total latency per action and locator as a table to the Extent report.
+     */
+    public static void publish() {
+        if (HISTOGRAMS.isEmpty()) {
+            return;
+        }
+        try {
+            export(Paths.get(System.getProperty("metrics.dir", Paths.get("test-output", "Metrics").toString())));
+        } catch (IOException e) {
+            System.out.println("Exception while exporting action metrics: " + e.getMessage());
+        }
+        try {
+            List<String[]> table = new ArrayList<>();
+            table.add(new String[]{"Action", "Locator", "Count", "p50 ms", "p95 ms", "p99 ms", "Max ms",
+                    "Wait p95 ms", "Find p95 ms", "Script p95 ms", "Action p95 ms"});
+            for (Histograms histograms : new TreeMap<>(HISTOGRAMS).values()) {
+                LatencyHistogram total = histograms.phases[0];
+                table.add(new String[]{histograms.action, histograms.locator, String.valueOf(total.getCount()),
+                        millis(total.getPercentileMicros(50)), millis(total.getPercentileMicros(95)),
+                        millis(total.getPercentileMicros(99)), millis(total.getMaxMicros()),
+                        millis(histograms.phases[WAIT].getPercentileMicros(95)),
+                        millis(histograms.phases[FIND].getPercentileMicros(95)),
+                        millis(histograms.phases[SCRIPT].getPercentileMicros(95)),
+                        millis(histograms.phases[ACTION].getPercentileMicros(95))});
+            }
+            ExtentReports extent = ExtentService.getInstance();
+            extent.createTest("Action latency").info(MarkupHelper.createTable(table.toArray(new String[0][])));
+            ExtentService.flush();
+        } catch (RuntimeException e) {
+            System.out.println("Exception while adding action metrics to the report: " + e.getMessage());
+        }
+    }
+
+    private static List<Map<String, Object>> rows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Histograms histograms : new TreeMap<>(HISTOGRAMS).values()) {
+            for (int phase = 0; phase < PHASES.length; phase++) {
+                LatencyHistogram histogram = histograms.phases[phase];
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("action", histograms.action);
+                row.put("locator", histograms.locator);
+                row.put("phase", PHASES[phase]);
+                row.put("count", histogram.getCount());
+                row.put("meanMs", histogram.getMeanMicros() / 1000.0);
+                row.put("p50Ms", histogram.getPercentileMicros(50) / 1000.0);
+                row.put("p95Ms", histogram.getPercentileMicros(95) / 1000.0);
+                row.put("p99Ms", histogram.getPercentileMicros(99) / 1000.0);
+                row.put("maxMs", histogram.getMaxMicros() / 1000.0);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+    }
+
+    private static String csvValue(Object value) {
+        String text = String.valueOf(value);
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * The histograms of one action on one locator, one per phase.
+     */
+    private static final class Histograms {
+        private final String action;
+        private final String locator;
+        private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+
+        private Histograms(String action, String locator) {
+            this.action = action;
+            this.locator = locator;
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+    }
+}
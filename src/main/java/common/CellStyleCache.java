@@ -0,0 +1,152 @@
+package common;
+
+import org.apache.poi.ss.usermodel.BorderStyle;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Cache of the cell styles created for one workbook.
+ * <p>
+ * Each distinct combination of style attributes is created once and reused for every cell that needs it,
+ * which keeps the style table of the workbook small. Color name lookups are cached as well.
+ */
+public class CellStyleCache {
+
+    private final Workbook workbook;
+    private final Map<StyleKey, CellStyle> styles = new HashMap<>();
+    private final Map<String, Optional<IndexedColors>> colors = new HashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor to initialize the cache for a workbook.
+     *
+     * @param workbook The workbook the cached styles are created in.
+     */
+    public CellStyleCache(Workbook workbook) {
+        this.workbook = workbook;
+    }
+
+    /**
+     * Get the indexed color with the given name, ignoring case.
+     *
+     * @param colorName The name of the color, e.g. "yellow" or "LIGHT_GREEN".
+     * @return The indexed color, or null if no color has that name.
+     */
+    public synchronized IndexedColors getColor(String colorName) {
+        return colors.computeIfAbsent(String.valueOf(colorName), name -> {
+            try {
+                return Optional.of(IndexedColors.valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Color name not found: " + name);
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * Get the cell style with the given attributes, creating it on first use.
+     *
+     * @param wrapText            Whether the text wraps inside the cell.
+     * @param verticalAlignment   The vertical alignment of the cell content.
+     * @param horizontalAlignment The horizontal alignment of the cell content.
+     * @param border              The border applied to all four sides of the cell.
+     * @param fillForegroundColor The index of the fill foreground color.
+     * @param fillPattern         The fill pattern of the cell.
+     * @return The shared cell style.
+     */
+    public synchronized CellStyle getStyle(boolean wrapText, VerticalAlignment verticalAlignment,
+                                           HorizontalAlignment horizontalAlignment, BorderStyle border,
+                                           short fillForegroundColor, FillPatternType fillPattern) {
+        StyleKey key = new StyleKey(wrapText, verticalAlignment, horizontalAlignment, border, fillForegroundColor, fillPattern);
+        CellStyle style = styles.get(key);
+        if (style != null) {
+            hits++;
+            return style;
+        }
+        misses++;
+        style = workbook.createCellStyle();
+        style.setWrapText(wrapText);
+        style.setVerticalAlignment(verticalAlignment);
+        style.setAlignment(horizontalAlignment);
+        style.setBorderTop(border);
+        style.setBorderBottom(border);
+        style.setBorderLeft(border);
+        style.setBorderRight(border);
+        style.setFillForegroundColor(fillForegroundColor);
+        style.setFillPattern(fillPattern);
+        styles.put(key, style);
+        return style;
+    }
+
+    /**
+     * Get the number of distinct styles created through this cache.
+     *
+     * @return The number of cached styles.
+     */
+    public synchronized int size() {
+        return styles.size();
+    }
+
+    /**
+     * Get the share of style requests served from the cache.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CellStyleCache[styles=%d, hits=%d, misses=%d, hitRate=%.1f%%]", styles.size(), hits, misses, getHitRate() * 100);
+    }
+
+    private static final class StyleKey {
+        private final boolean wrapText;
+        private final VerticalAlignment verticalAlignment;
+        private final HorizontalAlignment horizontalAlignment;
+        private final BorderStyle border;
+        private final short fillForegroundColor;
+        private final FillPatternType fillPattern;
+
+        private StyleKey(boolean wrapText, VerticalAlignment verticalAlignment, HorizontalAlignment horizontalAlignment,
+                         BorderStyle border, short fillForegroundColor, FillPatternType fillPattern) {
+            this.wrapText = wrapText;
+            this.verticalAlignment = verticalAlignment;
+            this.horizontalAlignment = horizontalAlignment;
+            this.border = border;
+            this.fillForegroundColor = fillForegroundColor;
+            this.fillPattern = fillPattern;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof StyleKey)) {
+                return false;
+            }
+            StyleKey key = (StyleKey) other;
+            return wrapText == key.wrapText && fillForegroundColor == key.fillForegroundColor
+                    && verticalAlignment == key.verticalAlignment && horizontalAlignment == key.horizontalAlignment
+                    && border == key.border && fillPattern == key.fillPattern;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(wrapText, verticalAlignment, horizontalAlignment, border, fillForegroundColor, fillPattern);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package common;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Cell-to-string conversion rules shared by the in-memory and the streaming Excel readers.
+ * <p>
+ * Strings are returned as they are, date formatted numbers as MM/dd/yyyy, other numbers through
+ * {@link String#valueOf(double)}, booleans as true/false, formulas as their formula text and blank
+ * or error cells as an empty string.
+ */
+public final class CellValueFormatter {
+
+    private static final String DATE_PATTERN = "MM/dd/yyyy";
+
+    private CellValueFormatter() {
+    }
+
+    /**
+     * Reads the value of a cell as a String.
+     *
+     * @param cell The cell to read, may be null.
+     * @return The cell value as a String, or an empty string for null, blank and error cells.
+     */
+    public static String readCellValue(Cell cell) {
+        String cellValue = "";
+        if (cell != null) {
+            switch (cell.getCellType()) {
+                case STRING:
+                    cellValue = cell.getStringCellValue();
+                    break;
+                case NUMERIC:
+                    if (DateUtil.isCellDateFormatted(cell)) {
+                        cellValue = formatDate(cell.getDateCellValue());
+                    } else {
+                        cellValue = String.valueOf(cell.getNumericCellValue());
+                    }
+                    break;
+                case BOOLEAN:
+                    cellValue = String.valueOf(cell.getBooleanCellValue());
+                    break;
+                case FORMULA:
+                    cellValue = cell.getCellFormula();
+                    break;
+                case BLANK:
+                    // Do nothing, leave cellValue as empty string
+                    break;
+            }
+        }
+        return cellValue;
+    }
+
+    /**
+     * Formats a raw numeric cell value the way {@link #readCellValue(Cell)} formats numeric cells.
+     *
+     * @param value          The numeric value stored in the cell.
+     * @param dateFormatted  Whether the cell style uses a date format.
+     * @param use1904Windowing Whether the workbook uses the 1904 date system.
+     * @return The numeric value, or the date it represents, as a String.
+     */
+    public static String formatNumeric(double value, boolean dateFormatted, boolean use1904Windowing) {
+        if (dateFormatted && DateUtil.isValidExcelDate(value)) {
+            return formatDate(DateUtil.getJavaDate(value, use1904Windowing));
+        }
+        return String.valueOf(value);
+    }
+
+    private static String formatDate(Date date) {
+        return new SimpleDateFormat(DATE_PATTERN).format(date);
+    }
+}
@@ -0,0 +1,50 @@
+package common;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.HookTestStep;
+import io.cucumber.plugin.event.PickleStepTestStep;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestCaseStarted;
+import io.cucumber.plugin.event.TestStep;
+import io.cucumber.plugin.event.TestStepFinished;
+import io.cucumber.plugin.event.TestStepStarted;
+
+/**
+ * Cucumber plugin that records a span for every scenario and every step, including hooks, in the
+ * {@link TraceRecorder} timeline. The trace is written once for the whole suite by BaseTest.finishSuite(),
+ * which both Cucumber runners call when they finish.
+ * <p>
+ * Cucumber publishes these events on the thread running the scenario, so the spans land on the track of
+ * that worker thread.
+ */
+public class CucumberTracePlugin implements ConcurrentEventListener {
+
+    private static final ThreadLocal<long[]> STARTS = ThreadLocal.withInitial(() -> new long[2]);
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        if (!TraceRecorder.isEnabled()) {
+            return;
+        }
+        publisher.registerHandlerFor(TestCaseStarted.class, event -> STARTS.get()[0] = System.nanoTime());
+        publisher.registerHandlerFor(TestCaseFinished.class, event -> TraceRecorder.span(
+                "Scenario: " + event.getTestCase().getName() + " [" + event.getResult().getStatus() + "]",
+                "scenario", STARTS.get()[0], System.nanoTime()));
+        publisher.registerHandlerFor(TestStepStarted.class, event -> STARTS.get()[1] = System.nanoTime());
+        publisher.registerHandlerFor(TestStepFinished.class, event -> TraceRecorder.span(
+                stepName(event.getTestStep()) + " [" + event.getResult().getStatus() + "]",
+                event.getTestStep() instanceof HookTestStep ? "hook" : "step", STARTS.get()[1], System.nanoTime()));
+    }
+
+    private static String stepName(TestStep step) {
+        if (step instanceof PickleStepTestStep) {
+            PickleStepTestStep pickleStep = (PickleStepTestStep) step;
+            return pickleStep.getStep().getKeyword() + pickleStep.getStep().getText();
+        }
+        if (step instanceof HookTestStep) {
+            return "Hook " + ((HookTestStep) step).getHookType() + " " + step.getCodeLocation();
+        }
+        return step.getCodeLocation();
+    }
+}
@@ -0,0 +1,267 @@
+package common;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, column-oriented copy of an Excel sheet for data-driven tests.
+ * <p>
+ * The first row of the sheet is the header. Header names are mapped to column indexes once, so values are
+ * looked up by row and column name in constant time. Every distinct value is stored once; columns hold
+ * indexes into that value table, which keeps sheets with many repeated values small. The column indexes
+ * live in int buffers, so a table loaded from a {@link TestDataSnapshot} reads them straight from the
+ * memory-mapped snapshot file.
+ */
+public final class ExcelDataTable {
+
+    private final List<String> headers;
+    private final Map<String, Integer> headerIndex;
+    private final String[] values;
+    private final IntBuffer[] columns;
+    private final int rowCount;
+
+    ExcelDataTable(List<String> headers, String[] values, IntBuffer[] columns, int rowCount) {
+        this.headers = Collections.unmodifiableList(new ArrayList<>(headers));
+        this.values = values;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        Map<String, Integer> index = new HashMap<>();
+        for (int column = 0; column < headers.size(); column++) {
+            index.putIfAbsent(headers.get(column), column);
+        }
+        this.headerIndex = index;
+    }
+
+    /**
+     * Load a sheet of an Excel file by streaming it.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet to load.
+     * @return The table holding all data rows of the sheet.
+     */
+    public static ExcelDataTable load(String filePath, String sheetName) {
+        try (ExcelStreamReader reader = new ExcelStreamReader(filePath, sheetName)) {
+            Builder builder = new Builder(reader.getHeaders());
+            while (reader.hasNext()) {
+                builder.addRow(reader.nextValues());
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * Get the header names in column order.
+     *
+     * @return The header names.
+     */
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Get the number of data rows, excluding the header row.
+     *
+     * @return The number of data rows.
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return The number of columns.
+     */
+    public int columnCount() {
+        return headers.size();
+    }
+
+    /**
+     * Check whether the table has a column with the given header name.
+     *
+     * @param columnName The header name of the column.
+     * @return true if the column exists.
+     */
+    public boolean hasColumn(String columnName) {
+        return headerIndex.containsKey(columnName);
+    }
+
+    /**
+     * Get the index of the column with the given header name.
+     *
+     * @param columnName The header name of the column.
+     * @return The 0-based column index.
+     */
+    public int columnIndex(String columnName) {
+        Integer column = headerIndex.get(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException("Column with specified name not found: " + columnName);
+        }
+        return column;
+    }
+
+    /**
+     * Get the value of a cell.
+     *
+     * @param rowNum The 0-based data row, excluding the header row.
+     * @param column The 0-based column index.
+     * @return The value of the cell as a String.
+     */
+    public String get(int rowNum, int column) {
+        return values[columns[column].get(rowNum)];
+    }
+
+    /**
+     * Get the value of a cell.
+     *
+     * @param rowNum     The 0-based data row, excluding the header row.
+     * @param columnName The header name of the column.
+     * @return The value of the cell as a String.
+     */
+    public String get(int rowNum, String columnName) {
+        return get(rowNum, columnIndex(columnName));
+    }
+
+    /**
+     * Get all values of a column as a read-only list.
+     *
+     * @param columnName The header name of the column.
+     * @return The values of the column, one per data row.
+     */
+    public List<String> getColumn(String columnName) {
+        final IntBuffer column = columns[columnIndex(columnName)];
+        return new AbstractList<String>() {
+            @Override
+            public String get(int rowNum) {
+                return values[column.get(rowNum)];
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        };
+    }
+
+    /**
+     * Get a data row as a record keyed by header name.
+     *
+     * @param rowNum The 0-based data row, excluding the header row.
+     * @return The values of the row keyed by header name.
+     */
+    public Map<String, String> getRow(int rowNum) {
+        if (rowNum < 0 || rowNum >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + rowNum + " is outside of the " + rowCount + " data rows.");
+        }
+        Map<String, String> row = new LinkedHashMap<>();
+        for (int column = 0; column < headers.size(); column++) {
+            row.putIfAbsent(headers.get(column), get(rowNum, column));
+        }
+        return row;
+    }
+
+    /**
+     * Estimate the memory held by the table: the distinct values plus four bytes per cell.
+     *
+     * @return The estimated size of the table in bytes.
+     */
+    public long estimatedBytes() {
+        long bytes = (long) rowCount * headers.size() * Integer.BYTES;
+        for (String value : values) {
+            bytes += 40 + 2L * value.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the table of distinct values the columns point into.
+     *
+     * @return The distinct values of the table.
+     */
+    String[] values() {
+        return values;
+    }
+
+    /**
+     * Get the value indexes of a column, one per data row.
+     *
+     * @param column The 0-based column index.
+     * @return A read-only view of the value indexes of the column.
+     */
+    IntBuffer columnIndexes(int column) {
+        return columns[column].asReadOnlyBuffer();
+    }
+
+    /**
+     * Builder collecting the rows of a table column by column, storing each distinct value once.
+     */
+    public static final class Builder {
+
+        private final List<String> headers;
+        private final Map<String, Integer> valueIndex = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[][] columns;
+        private int rowCount = 0;
+
+        /**
+         * Constructor to start a table with the given header names.
+         *
+         * @param headers The header names in column order.
+         */
+        public Builder(List<String> headers) {
+            this.headers = new ArrayList<>(headers);
+            this.columns = new int[headers.size()][16];
+        }
+
+        /**
+         * Add a data row. Values beyond the header columns are ignored, missing values are empty strings.
+         *
+         * @param row The values of the row in column order.
+         * @return This builder.
+         */
+        public Builder addRow(List<String> row) {
+            if (rowCount == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Table is full.");
+            }
+            for (int column = 0; column < columns.length; column++) {
+                if (rowCount == columns[column].length) {
+                    columns[column] = Arrays.copyOf(columns[column], rowCount + (rowCount >> 1));
+                }
+                columns[column][rowCount] = intern(column < row.size() ? row.get(column) : "");
+            }
+            rowCount++;
+            return this;
+        }
+
+        /**
+         * Build the immutable table.
+         *
+         * @return The table holding the added rows.
+         */
+        public ExcelDataTable build() {
+            IntBuffer[] trimmed = new IntBuffer[columns.length];
+            for (int column = 0; column < columns.length; column++) {
+                trimmed[column] = IntBuffer.wrap(Arrays.copyOf(columns[column], rowCount));
+            }
+            return new ExcelDataTable(headers, values.toArray(new String[0]), trimmed, rowCount);
+        }
+
+        private int intern(String value) {
+            String key = value == null ? "" : value;
+            Integer index = valueIndex.get(key);
+            if (index == null) {
+                index = values.size();
+                values.add(key);
+                valueIndex.put(key, index);
+            }
+            return index;
+        }
+    }
+}
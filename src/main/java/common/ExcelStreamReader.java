@@ -0,0 +1,311 @@
+package common;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for a single sheet of an .xlsx file.
+ * <p>
+ * The sheet XML is pulled one row at a time, so memory use stays constant regardless of the number of rows.
+ * The first row is taken as the header and every following row is returned as a record keyed by header name.
+ * Cells are converted with the same rules as {@link CellValueFormatter#readCellValue}; for cells that
+ * share a formula defined in another cell the cached result is returned, as the formula text is not stored
+ * in the cell itself.
+ */
+public class ExcelStreamReader implements Iterator<Map<String, String>>, AutoCloseable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final OPCPackage excelPackage;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final StylesTable styles;
+    private final boolean use1904Windowing;
+    private final InputStream sheetStream;
+    private final XMLStreamReader xml;
+    private final List<String> headers;
+    private List<String> nextRow;
+
+    /**
+     * Constructor to open a sheet of an Excel file for streaming.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet to read.
+     */
+    public ExcelStreamReader(String filePath, String sheetName) {
+        try {
+            this.excelPackage = OPCPackage.open(new File(filePath), PackageAccess.READ);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Not able to open Excel file '" + filePath + "'.", e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(excelPackage);
+            this.sharedStrings = new ReadOnlySharedStringsTable(excelPackage, false);
+            this.styles = reader.getStylesTable();
+            this.use1904Windowing = isDate1904(reader);
+            this.sheetStream = openSheet(reader, sheetName);
+            this.xml = XML_INPUT_FACTORY.createXMLStreamReader(sheetStream);
+            List<String> headerRow = readRow();
+            this.headers = headerRow == null ? Collections.<String>emptyList() : Collections.unmodifiableList(headerRow);
+            this.nextRow = readRow();
+        } catch (RuntimeException e) {
+            excelPackage.revert();
+            throw e;
+        } catch (Exception e) {
+            excelPackage.revert();
+            throw new IllegalStateException("Not able to read sheet '" + sheetName + "' of '" + filePath + "'.", e);
+        }
+    }
+
+    /**
+     * Get the header names of the sheet.
+     *
+     * @return The values of the first row, in column order.
+     */
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return nextRow != null;
+    }
+
+    /**
+     * Get the next data row as a record keyed by header name. Columns missing in the row map to an empty string.
+     *
+     * @return The next row of the sheet.
+     */
+    @Override
+    public Map<String, String> next() {
+        if (nextRow == null) {
+            throw new NoSuchElementException();
+        }
+        Map<String, String> record = new LinkedHashMap<>();
+        for (int index = 0; index < headers.size(); index++) {
+            record.put(headers.get(index), index < nextRow.size() ? nextRow.get(index) : "");
+        }
+        try {
+            nextRow = readRow();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Not able to read the next row of the sheet.", e);
+        }
+        return record;
+    }
+
+    /**
+     * Get the values of the next data row in header order. Columns missing in the row are empty strings.
+     *
+     * @return The values of the next row of the sheet.
+     */
+    public List<String> nextValues() {
+        if (nextRow == null) {
+            throw new NoSuchElementException();
+        }
+        List<String> values = nextRow;
+        while (values.size() < headers.size()) {
+            values.add("");
+        }
+        try {
+            nextRow = readRow();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Not able to read the next row of the sheet.", e);
+        }
+        return values;
+    }
+
+    /**
+     * Get the remaining rows as a lazy stream. Closing the stream closes this reader.
+     *
+     * @return Stream of records keyed by header name.
+     */
+    public Stream<Map<String, String>> stream() {
+        Spliterator<Map<String, String>> rows = Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(rows, false).onClose(this::close);
+    }
+
+    /**
+     * Close the underlying sheet stream and Excel file.
+     */
+    @Override
+    public void close() {
+        try {
+            xml.close();
+            sheetStream.close();
+        } catch (XMLStreamException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            excelPackage.revert();
+        }
+    }
+
+    /**
+     * Pull the next non-empty row from the sheet XML.
+     *
+     * @return The cell values of the row indexed by column, or null at the end of the sheet.
+     */
+    private List<String> readRow() throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+                List<String> row = readCells();
+                if (!row.isEmpty()) {
+                    return row;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<String> readCells() throws XMLStreamException {
+        List<String> row = new ArrayList<>();
+        int column = -1;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                String reference = xml.getAttributeValue(null, "r");
+                column = reference == null ? column + 1 : columnIndex(reference);
+                String value = readCell();
+                while (row.size() <= column) {
+                    row.add("");
+                }
+                row.set(column, value);
+            }
+        }
+        return row;
+    }
+
+    private String readCell() throws XMLStreamException {
+        String type = xml.getAttributeValue(null, "t");
+        String style = xml.getAttributeValue(null, "s");
+        String rawValue = null;
+        String formula = null;
+        StringBuilder inlineText = null;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (xml.getLocalName()) {
+                    case "v":
+                        rawValue = xml.getElementText();
+                        break;
+                    case "f":
+                        formula = xml.getElementText();
+                        break;
+                    case "t":
+                        if (inlineText == null) {
+                            inlineText = new StringBuilder();
+                        }
+                        inlineText.append(xml.getElementText());
+                        break;
+                }
+            }
+        }
+        if (formula != null && !formula.isEmpty()) {
+            return formula;
+        }
+        if (type == null) {
+            type = "n";
+        }
+        switch (type) {
+            case "s":
+                return rawValue == null ? "" : sharedStrings.getItemAt(Integer.parseInt(rawValue)).getString();
+            case "inlineStr":
+                return inlineText == null ? "" : inlineText.toString();
+            case "str":
+                return rawValue == null ? "" : rawValue;
+            case "b":
+                return rawValue == null ? "" : String.valueOf("1".equals(rawValue));
+            case "n":
+                return rawValue == null || rawValue.isEmpty() ? "" : CellValueFormatter.formatNumeric(
+                        Double.parseDouble(rawValue), isDateFormatted(style), use1904Windowing);
+            default:
+                // Error cells and unknown types are read as empty, like blank cells
+                return "";
+        }
+    }
+
+    private boolean isDateFormatted(String style) {
+        if (style == null || styles == null) {
+            return false;
+        }
+        XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+        return cellStyle != null && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString());
+    }
+
+    private static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static InputStream openSheet(XSSFReader reader, String sheetName) throws Exception {
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        while (sheets.hasNext()) {
+            InputStream sheet = sheets.next();
+            if (sheets.getSheetName().equals(sheetName)) {
+                return sheet;
+            }
+            sheet.close();
+        }
+        throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in the Excel file.");
+    }
+
+    private static boolean isDate1904(XSSFReader reader) throws Exception {
+        try (InputStream workbook = reader.getWorkbookData()) {
+            XMLStreamReader workbookXml = XML_INPUT_FACTORY.createXMLStreamReader(workbook);
+            try {
+                while (workbookXml.hasNext()) {
+                    if (workbookXml.next() == XMLStreamConstants.START_ELEMENT && "workbookPr".equals(workbookXml.getLocalName())) {
+                        String date1904 = workbookXml.getAttributeValue(null, "date1904");
+                        return "1".equals(date1904) || "true".equals(date1904);
+                    }
+                    if (workbookXml.isStartElement() && "sheets".equals(workbookXml.getLocalName())) {
+                        return false;
+                    }
+                }
+                return false;
+            } finally {
+                workbookXml.close();
+            }
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package common;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.openqa.selenium.WebDriver;
 
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Gopi Appapuram
@@ -18,6 +33,19 @@ public class ExcelUtility {
     private Workbook workbook;
     private Sheet sheet;
     private String filePath;
+    private CellStyleCache styleCache;
+    private Map<String, Integer> headerIndex;
+    private int nextEmptyRow = -1;
+    private ExcelDataTable table;
+
+    private int flushEveryWrites = 1;
+    private long flushIntervalMillis = 0;
+    private int pendingWrites = 0;
+    private long lastFlushMillis = System.currentTimeMillis();
+    private ScheduledExecutorService flushTimer;
+    private boolean streaming = false;
+    private int firstStreamingRow = 0;
+    private int nextStreamingRow = 0;
 
     /**
      * Constructor to initialize ExcelUtility with the file path to an Excel file.
@@ -29,21 +57,36 @@ public class ExcelUtility {
         try {
             FileInputStream fileInputStream = new FileInputStream(filePath);
             this.workbook = WorkbookFactory.create(fileInputStream);
+            this.styleCache = new CellStyleCache(workbook);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Read a sheet of an Excel file as an immutable table without opening the workbook. The sheet is
+     * shared through the suite-wide {@link TestDataCache}, which loads it from its memory-mapped
+     * {@link TestDataSnapshot} on first use.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet to read.
+     * @return The data rows of the sheet keyed by the header row.
+     */
+    public static ExcelDataTable readTable(String filePath, String sheetName) {
+        return TestDataCache.getInstance().get(filePath, sheetName);
+    }
+
     /**
      * Set the Excel sheet by name.
      *
      * @param sheetName The name of the sheet to set.
      */
-    public void setSheet(String sheetName) {
+    public synchronized void setSheet(String sheetName) {
         this.sheet = workbook.getSheet(sheetName);
         if (this.sheet == null) {
             throw new IllegalArgumentException("Sheet '" + sheetName + "' not found in the Excel file.");
         }
+        resetSheetCaches();
     }
 
     /**
@@ -51,11 +94,71 @@ public class ExcelUtility {
      *
      * @param sheetIndex The index of the sheet to set.
      */
-    public void setSheet(int sheetIndex) {
+    public synchronized void setSheet(int sheetIndex) {
         this.sheet = workbook.getSheetAt(sheetIndex);
         if (this.sheet == null) {
             throw new IllegalArgumentException("Sheet at index " + sheetIndex + " not found in the Excel file.");
         }
+        resetSheetCaches();
+    }
+
+    /**
+     * Buffer writes in memory and save the workbook in batches instead of after every write.
+     * The workbook is saved once the given number of writes is pending, when the interval has passed
+     * since the last save, and on {@link #close()}.
+     *
+     * @param flushEveryWrites    The number of writes after which the workbook is saved.
+     * @param flushIntervalMillis The maximum time in milliseconds writes stay unsaved, or 0 to save on the write count only.
+     */
+    public synchronized void setBufferedWrites(int flushEveryWrites, long flushIntervalMillis) {
+        if (flushEveryWrites < 1 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush write count must be at least 1 and the interval must not be negative.");
+        }
+        this.flushEveryWrites = flushEveryWrites;
+        this.flushIntervalMillis = flushIntervalMillis;
+        stopFlushTimer();
+        if (flushIntervalMillis > 0) {
+            flushTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "excel-flush-" + new File(filePath).getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            flushTimer.scheduleWithFixedDelay(this::flushIfDue, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Switch to the SXSSF streaming writer for very large outputs. Only the last rows written are kept in
+     * memory; the workbook is saved once, on {@link #close()}.
+     * <p>
+     * In this mode rows are appended after the existing rows of the sheet, and rows already written
+     * or stored in the file can no longer be read or changed.
+     *
+     * @param rowAccessWindow The number of most recent rows kept in memory.
+     */
+    public synchronized void setStreamingWrites(int rowAccessWindow) {
+        if (streaming) {
+            return;
+        }
+        if (!(workbook instanceof XSSFWorkbook)) {
+            throw new IllegalStateException("Streaming writes are only supported for .xlsx files.");
+        }
+        String sheetName = sheet == null ? null : sheet.getSheetName();
+        this.workbook = new SXSSFWorkbook((XSSFWorkbook) workbook, rowAccessWindow);
+        this.streaming = true;
+        if (sheetName != null) {
+            setSheet(sheetName);
+        }
+    }
+
+    /**
+     * Save all pending writes to the Excel file. In streaming mode the workbook is saved on {@link #close()} only.
+     */
+    public synchronized void flush() {
+        if (pendingWrites == 0 || streaming) {
+            return;
+        }
+        saveWorkbook();
     }
 
     /**
@@ -63,7 +166,7 @@ public class ExcelUtility {
      *
      * @return The total number of rows in the sheet.
      */
-    public int rowCount() {
+    public synchronized int rowCount() {
         return sheet.getLastRowNum();
     }
 
@@ -73,7 +176,7 @@ public class ExcelUtility {
      * @param rowNum The row number for which to count the columns (0-based index).
      * @return The number of columns in the specified row.
      */
-    public int colCount(int rowNum) {
+    public synchronized int colCount(int rowNum) {
         // Get the current row from the Excel sheet
         Row currentRow = sheet.getRow(rowNum);
 
@@ -95,7 +198,7 @@ public class ExcelUtility {
      * @param colNum The column number of the cell.
      * @return The data in the specified cell as a String.
      */
-    public String readData(int rowNum, int colNum) {
+    public synchronized String readData(int rowNum, int colNum) {
         Row row = sheet.getRow(rowNum);
         if (row == null) {
             return "";
@@ -114,7 +217,13 @@ public class ExcelUtility {
      * @param colNum The column number of the cell.
      * @param data   The data to write to the cell.
      */
-    public void writeDataOnSefColRow(int rowNum, int colNum, String data) {
+    public synchronized void writeDataOnSefColRow(int rowNum, int colNum, String data) {
+        if (streaming) {
+            if (rowNum < firstStreamingRow) {
+                throw new IllegalStateException("Row " + rowNum + " is already stored in the file and cannot be changed in streaming mode.");
+            }
+            nextStreamingRow = Math.max(nextStreamingRow, rowNum + 1);
+        }
         Row row = sheet.getRow(rowNum);
         if (row == null) {
             row = sheet.createRow(rowNum);
@@ -125,13 +234,8 @@ public class ExcelUtility {
         }
         cell.setCellValue(data);
 
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-            workbook.write(fileOutputStream);
-            fileOutputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        rowWritten(rowNum);
+        writeCompleted();
     }
 
     /**
@@ -141,7 +245,7 @@ public class ExcelUtility {
      * @param data      The array of data to write to the cells.
      * @param colorName The name of the color to apply to the cell background.
      */
-    public void writeData(int startCol, String[] data, String colorName) {
+    public synchronized void writeData(int startCol, String[] data, String colorName) {
         int rowNum = findNextEmptyRow();
 
         Row row = sheet.getRow(rowNum);
@@ -149,42 +253,18 @@ public class ExcelUtility {
             row = sheet.createRow(rowNum);
         }
 
+        CellStyle style = borderedStyle(colorName, IndexedColors.WHITE1);
         for (int i = 0; i < data.length; i++) {
             Cell cell = row.getCell(startCol + i);
             if (cell == null) {
                 cell = row.createCell(startCol + i);
             }
             cell.setCellValue(data[i]);
-
-            CellStyle style = workbook.createCellStyle();
-            style.setWrapText(true);
-            style.setVerticalAlignment(VerticalAlignment.TOP);
-            style.setAlignment(HorizontalAlignment.LEFT);
-            style.setBorderTop(BorderStyle.MEDIUM);
-            style.setBorderBottom(BorderStyle.MEDIUM);
-            style.setBorderLeft(BorderStyle.MEDIUM);
-            style.setBorderRight(BorderStyle.MEDIUM);
-            style.setFillForegroundColor(IndexedColors.WHITE1.getIndex());
-
-            try {
-                IndexedColors indexedColor = IndexedColors.valueOf(colorName.toUpperCase());
-                short colorIndex = indexedColor.getIndex();
-                style.setFillForegroundColor(colorIndex);
-                style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-            } catch (IllegalArgumentException e) {
-                System.out.println("Color name not found: " + colorName);
-            }
-
             cell.setCellStyle(style);
         }
 
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-            workbook.write(fileOutputStream);
-            fileOutputStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        rowWritten(rowNum);
+        writeCompleted();
     }
 
     /**
@@ -194,19 +274,11 @@ public class ExcelUtility {
      * @param columnName The name of the column to retrieve the value from.
      * @return The value under the specified column in the specified row as a String.
      */
-    public String getValueFromColumn(int rowNum, String columnName) {
-        int columnIndex = -1;
-
-        // Find the column index of the specified column by searching for the column header
-        Row headerRow = sheet.getRow(0);
-        for (Cell cell : headerRow) {
-            if (cell.getStringCellValue().equals(columnName)) {
-                columnIndex = cell.getColumnIndex();
-                break;
-            }
-        }
+    public synchronized String getValueFromColumn(int rowNum, String columnName) {
+        // Look the column up in the header index, which is built once per sheet
+        Integer columnIndex = headerIndex().get(columnName);
 
-        if (columnIndex != -1) {
+        if (columnIndex != null) {
             // Retrieve the value under the specified column in the specified row
             Row row = sheet.getRow(rowNum + 1); // Skip the header row
             if (row != null) {
@@ -222,21 +294,100 @@ public class ExcelUtility {
         return ""; // Return an empty string if the value is not found
     }
 
+    /**
+     * Get the current sheet as an immutable, column-oriented table. The table is built once and
+     * reused until the sheet is written to or another sheet is selected.
+     *
+     * @return The data rows of the current sheet keyed by the header row.
+     */
+    public synchronized ExcelDataTable getTable() {
+        if (streaming) {
+            throw new IllegalStateException("The sheet cannot be read back in streaming mode.");
+        }
+        if (table == null) {
+            List<String> headers = new ArrayList<>();
+            Row headerRow = sheet.getRow(0);
+            for (int column = 0; headerRow != null && column < headerRow.getLastCellNum(); column++) {
+                headers.add(CellValueFormatter.readCellValue(headerRow.getCell(column)));
+            }
+            ExcelDataTable.Builder builder = new ExcelDataTable.Builder(headers);
+            List<String> values = new ArrayList<>(headers.size());
+            for (int rowNum = 1; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                Row row = sheet.getRow(rowNum);
+                if (row == null) {
+                    continue;
+                }
+                values.clear();
+                for (int column = 0; column < headers.size(); column++) {
+                    values.add(CellValueFormatter.readCellValue(row.getCell(column)));
+                }
+                builder.addRow(values);
+            }
+            table = builder.build();
+        }
+        return table;
+    }
+
+    /**
+     * Get the map of header names to column indexes of the current sheet, building it on first use.
+     *
+     * @return The column index of every header name.
+     */
+    private Map<String, Integer> headerIndex() {
+        if (headerIndex == null) {
+            headerIndex = new HashMap<>();
+            Row headerRow = sheet.getRow(0);
+            if (headerRow != null) {
+                for (Cell cell : headerRow) {
+                    if (cell.getCellType() == CellType.STRING) {
+                        headerIndex.putIfAbsent(cell.getStringCellValue(), cell.getColumnIndex());
+                    }
+                }
+            }
+        }
+        return headerIndex;
+    }
+
 
     /**
-     * Find the next empty row in the Excel sheet.
+     * Find the next empty row in the Excel sheet. The first gap is searched once per sheet and then
+     * kept up to date as rows are written.
      *
      * @return The index of the next empty row.
      */
     private int findNextEmptyRow() {
-        int rowNum = 0;
+        if (streaming) {
+            return nextStreamingRow++;
+        }
+        if (nextEmptyRow < 0) {
+            nextEmptyRow = nextEmptyRowFrom(0);
+        }
+        return nextEmptyRow;
+    }
+
+    private int nextEmptyRowFrom(int rowNum) {
         while (sheet.getRow(rowNum) != null) {
             rowNum++;
         }
         return rowNum;
     }
 
-    public void writeSingleValues(int startCol, String data, String colorName) {
+    /**
+     * Keep the header index, row tail pointer and table of the current sheet in line with a written row.
+     *
+     * @param rowNum The row that was written.
+     */
+    private void rowWritten(int rowNum) {
+        if (rowNum == 0) {
+            headerIndex = null;
+        }
+        if (!streaming && rowNum == nextEmptyRow) {
+            nextEmptyRow = nextEmptyRowFrom(rowNum + 1);
+        }
+        table = null;
+    }
+
+    public synchronized void writeSingleValues(int startCol, String data, String colorName) {
         int rowNum = findNextEmptyRow();
 
         Row row = sheet.getRow(rowNum);
@@ -250,45 +401,125 @@ public class ExcelUtility {
         }
         cell.setCellValue(data);
 
-        CellStyle style = workbook.createCellStyle();
-        style.setWrapText(true);
-        style.setVerticalAlignment(VerticalAlignment.TOP);
-        style.setAlignment(HorizontalAlignment.LEFT);
-        style.setBorderTop(BorderStyle.MEDIUM);
-        style.setBorderBottom(BorderStyle.MEDIUM);
-        style.setBorderLeft(BorderStyle.MEDIUM);
-        style.setBorderRight(BorderStyle.MEDIUM);
-        //style.setFillForegroundColor(IndexedColors.WHITE1.getIndex());
+        CellStyle style = borderedStyle(colorName, IndexedColors.AUTOMATIC);
+        cell.setCellStyle(style);
 
-        try {
-            IndexedColors indexedColor = IndexedColors.valueOf(colorName.toUpperCase());
-            short colorIndex = indexedColor.getIndex();
-            style.setFillForegroundColor(colorIndex);
-            style.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        } catch (IllegalArgumentException e) {
-            System.out.println("Color name not found: " + colorName);
-        }
+        rowWritten(rowNum);
+        writeCompleted();
+    }
 
-        cell.setCellStyle(style);
 
+    /**
+     * Get the cache of the cell styles created by the styled writes.
+     *
+     * @return The style cache of this workbook.
+     */
+    public CellStyleCache getStyleCache() {
+        return styleCache;
+    }
+
+    /**
+     * Get the wrapped, top-left aligned style with medium borders used by the styled writes.
+     *
+     * @param colorName    The name of the fill color.
+     * @param defaultColor The fill foreground color used when the color name is not found.
+     * @return The shared cell style.
+     */
+    private CellStyle borderedStyle(String colorName, IndexedColors defaultColor) {
+        IndexedColors fillColor = styleCache.getColor(colorName);
+        return styleCache.getStyle(true, VerticalAlignment.TOP, HorizontalAlignment.LEFT, BorderStyle.MEDIUM,
+                fillColor == null ? defaultColor.getIndex() : fillColor.getIndex(),
+                fillColor == null ? FillPatternType.NO_FILL : FillPatternType.SOLID_FOREGROUND);
+    }
+
+    /**
+     * Save any pending writes and close the Excel workbook.
+     */
+    public synchronized void close() {
+        stopFlushTimer();
+        if (pendingWrites > 0) {
+            saveWorkbook();
+        }
         try {
-            FileOutputStream fileOutputStream = new FileOutputStream(filePath);
-            workbook.write(fileOutputStream);
-            fileOutputStream.close();
+            if (streaming) {
+                ((SXSSFWorkbook) workbook).dispose();
+            }
+            workbook.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Count a completed write and save the workbook when the buffering thresholds are reached.
+     */
+    private void writeCompleted() {
+        pendingWrites++;
+        if (streaming) {
+            return;
+        }
+        if (pendingWrites >= flushEveryWrites
+                || (flushIntervalMillis > 0 && System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis)) {
+            saveWorkbook();
+        }
+    }
+
+    private synchronized void flushIfDue() {
+        if (System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis) {
+            flush();
+        }
+    }
+
+    private void stopFlushTimer() {
+        if (flushTimer != null) {
+            flushTimer.shutdownNow();
+            flushTimer = null;
+        }
+    }
 
     /**
-     * Close the Excel workbook.
+     * Write the workbook to a temporary file next to the Excel file and move it over the Excel file,
+     * so an interrupted save never leaves a partially written file behind.
      */
-    public void close() {
+    private void saveWorkbook() {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path tempFile = null;
         try {
-            workbook.close();
+            tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                workbook.write(outputStream);
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            pendingWrites = 0;
+            lastFlushMillis = System.currentTimeMillis();
         } catch (IOException e) {
             e.printStackTrace();
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // The temporary file is left behind; the Excel file itself is unchanged
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the header index, row tail pointer and table of the previous sheet. In streaming mode, start
+     * appending after the last row stored in the file for the current sheet.
+     */
+    private void resetSheetCaches() {
+        headerIndex = null;
+        nextEmptyRow = -1;
+        table = null;
+        if (streaming) {
+            Sheet storedSheet = ((SXSSFWorkbook) workbook).getXSSFWorkbook().getSheet(sheet.getSheetName());
+            firstStreamingRow = storedSheet.getPhysicalNumberOfRows() == 0 ? 0 : storedSheet.getLastRowNum() + 1;
+            nextStreamingRow = firstStreamingRow;
         }
     }
 }
@@ -0,0 +1,280 @@
+package common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server with local stand-ins for the pages under test, so the framework's own overhead can be
+ * measured without network noise.
+ * <p>
+ * The pages use the same locators as the page objects:
+ * <ul>
+ *     <li>/ap/signin - sign-in page with ap_email, continue, ap_password, signInSubmit and
+ *     auth-error-message-box; the password "invalid" shows the error message</li>
+ *     <li>/ - home page with the Amazon.in title, twotabsearchtextbox, nav-search-submit-button and
+ *     nav-link-accountList-nav-line-1</li>
+ *     <li>/s?k=term - search result page</li>
+ * </ul>
+ * The server is configured with system properties: "fixture.port" (default 0, any free port),
+ * "fixture.latencyMillis" (artificial delay of every response, default 0), "fixture.domSize" (number of
+ * extra product tiles on every page, default 0) and "fixture.assets" (number of images per page, each
+ * delayed like the page, default 0).
+ */
+public class FixtureServer implements AutoCloseable {
+
+    /**
+     * Title the home page object expects.
+     */
+    public static final String HOME_TITLE =
+            "Online Shopping site in India: Shop Online for Mobiles, Books, Watches, Shoes and More - Amazon.in";
+
+    private static final String ASSET_SVG = "<svg xmlns='http://www.w3.org/2000/svg' width='16' height='16'>"
+            + "<rect width='16' height='16' fill='#febd69'/></svg>";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long latencyMillis;
+    private final int domSize;
+    private final int assets;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Constructor to create a server; it serves requests after {@link #start()}.
+     *
+     * @param port          The port to listen on, 0 for any free port.
+     * @param latencyMillis The artificial delay of every response.
+     * @param domSize       The number of extra product tiles on every page.
+     * @param assets        The number of images on every page.
+     * @throws IOException if the port cannot be bound.
+     */
+    public FixtureServer(int port, long latencyMillis, int domSize, int assets) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.domSize = domSize;
+        this.assets = assets;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "fixture-server-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * Create a server configured with the "fixture.*" system properties.
+     *
+     * @return The configured, not yet started server.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static FixtureServer fromSystemProperties() throws IOException {
+        return new FixtureServer(Integer.getInteger("fixture.port", 0), Long.getLong("fixture.latencyMillis", 0),
+                Integer.getInteger("fixture.domSize", 0), Integer.getInteger("fixture.assets", 0));
+    }
+
+    /**
+     * Start serving requests.
+     *
+     * @return This server.
+     */
+    public FixtureServer start() {
+        server.start();
+        System.out.println("Fixture server started at " + getBaseUrl() + " (latency " + latencyMillis + "ms, "
+                + domSize + " extra tiles, " + assets + " assets)");
+        return this;
+    }
+
+    /**
+     * Get the address of the server.
+     *
+     * @return The base URL without a trailing slash, e.g. http://127.0.0.1:51234
+     */
+    public String getBaseUrl() {
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Resolve a path against the server.
+     *
+     * @param path The path, e.g. /ap/signin
+     * @return The absolute URL of the path.
+     */
+    public String url(String path) {
+        return getBaseUrl() + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    /**
+     * Get the number of requests served so far.
+     *
+     * @return The request count.
+     */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Run the server until the JVM is stopped, e.g. to point a browser at it by hand.
+     *
+     * @param args Not used; the server is configured with the "fixture.*" system properties.
+     * @throws IOException if the port cannot be bound.
+     * @throws InterruptedException if the main thread is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        FixtureServer server = fromSystemProperties().start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        Thread.currentThread().join();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/asset/")) {
+                respond(exchange, 200, "image/svg+xml", ASSET_SVG);
+            } else if (path.equals("/ap/signin")) {
+                respond(exchange, 200, "text/html", signInPage());
+            } else if (path.equals("/")) {
+                respond(exchange, 200, "text/html", homePage());
+            } else if (path.equals("/s")) {
+                respond(exchange, 200, "text/html", searchPage(queryParameter(exchange, "k")));
+            } else if (path.equals("/favicon.ico")) {
+                respond(exchange, 204, "image/x-icon", "");
+            } else {
+                respond(exchange, 404, "text/plain", "Not found: " + path);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private String signInPage() {
+        return page("Amazon Sign-In",
+                "<form id='signIn' onsubmit='return false;'>"
+                        + "<div id='emailStep'>"
+                        + "<label for='ap_email'>Email or mobile phone number</label>"
+                        + "<input type='email' id='ap_email' name='email'>"
+                        + "<input type='submit' id='continue' value='Continue' onclick='showPasswordStep()'>"
+                        + "</div>"
+                        + "<div id='passwordStep' style='display:none'>"
+                        + "<label for='ap_password'>Password</label>"
+                        + "<input type='password' id='ap_password' name='password'>"
+                        + "<input type='submit' id='signInSubmit' value='Sign in' onclick='signIn()'>"
+                        + "</div>"
+                        + "<div id='auth-error-message-box' style='display:none'>Your password is incorrect</div>"
+                        + "</form>"
+                        + "<script>"
+                        + "function showPasswordStep() {"
+                        + "  document.getElementById('emailStep').style.display = 'none';"
+                        + "  document.getElementById('passwordStep').style.display = 'block';"
+                        + "}"
+                        + "function signIn() {"
+                        + "  var password = document.getElementById('ap_password').value;"
+                        + "  if (!password || password === 'invalid') {"
+                        + "    document.getElementById('auth-error-message-box').style.display = 'block';"
+                        + "    return;"
+                        + "  }"
+                        + "  sessionStorage.setItem('fixtureUser', document.getElementById('ap_email').value);"
+                        + "  location.href = '/';"
+                        + "}"
+                        + "</script>");
+    }
+
+    private String homePage() {
+        return page(HOME_TITLE, navigation() + "<div id='content'><h1>Deals for you</h1></div>");
+    }
+
+    private String searchPage(String term) {
+        return page("Amazon.in : " + escape(term), navigation()
+                + "<div id='search'><span class='a-color-state'>\"" + escape(term) + "\"</span></div>");
+    }
+
+    private static String navigation() {
+        return "<div id='nav-belt'>"
+                + "<form action='/s' method='get'>"
+                + "<input type='text' id='twotabsearchtextbox' name='k'>"
+                + "<input type='submit' id='nav-search-submit-button' value='Go'>"
+                + "</form>"
+                + "<a id='nav-link-accountList' href='/ap/signin'>"
+                + "<span id='nav-link-accountList-nav-line-1'>Hello, sign in</span></a>"
+                + "</div>"
+                + "<script>"
+                + "var fixtureUser = sessionStorage.getItem('fixtureUser');"
+                + "if (fixtureUser) {"
+                + "  document.getElementById('nav-link-accountList-nav-line-1').textContent = 'Hello, ' + fixtureUser;"
+                + "}"
+                + "</script>";
+    }
+
+    private String page(String title, String body) {
+        StringBuilder html = new StringBuilder(1024 + domSize * 160);
+        html.append("<!DOCTYPE html><html><head><meta charset='utf-8'><title>").append(escape(title))
+                .append("</title></head><body>").append(body);
+        for (int i = 0; i < assets; i++) {
+            html.append("<img src='/asset/").append(i).append(".svg' alt='' width='16' height='16'>");
+        }
+        if (domSize > 0) {
+            html.append("<div id='fixture-tiles'>");
+            for (int i = 0; i < domSize; i++) {
+                html.append("<div class='s-result-item' data-index='").append(i).append("'><span class='a-text-normal'>Product ")
+                        .append(i).append("</span><span class='a-price'>").append(100 + i % 900).append("</span></div>");
+            }
+            html.append("</div>");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0 && parameter.substring(0, separator).equals(name)) {
+                    try {
+                        return URLDecoder.decode(parameter.substring(separator + 1), "UTF-8");
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+        return "";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;")
+                .replace("'", "&#39;");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
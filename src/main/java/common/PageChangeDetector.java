@@ -0,0 +1,50 @@
+package common;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+/**
+ * Detects whether the page changed since the last check, so unchanged pages do not have to be captured again.
+ * <p>
+ * The first check on a page installs a MutationObserver and input listeners that count DOM changes and typing.
+ * Each check costs one script call and compares a signature made of a per-page token, the change counter,
+ * the scroll position and the viewport size with the signature of the previous check.
+ */
+public class PageChangeDetector {
+
+    private static final String SIGNATURE_SCRIPT =
+            "var w = window;"
+                    + "if (!w.__pageChangeProbe) {"
+                    + "  var probe = w.__pageChangeProbe = { token: Math.random().toString(36).slice(2), changes: 0 };"
+                    + "  var count = function () { probe.changes++; };"
+                    + "  new MutationObserver(function (records) { probe.changes += records.length; })"
+                    + "    .observe(document, { subtree: true, childList: true, attributes: true, characterData: true });"
+                    + "  document.addEventListener('input', count, true);"
+                    + "  document.addEventListener('change', count, true);"
+                    + "}"
+                    + "var p = w.__pageChangeProbe;"
+                    + "return [p.token, p.changes, w.scrollX, w.scrollY, w.innerWidth, w.innerHeight].join('|');";
+
+    private String lastSignature;
+
+    /**
+     * Check whether the page changed since the previous call. The first call always reports a change, and
+     * so does any call where the page cannot be inspected.
+     *
+     * @param driver The WebDriver showing the page.
+     * @return true if the page may look different than at the previous call.
+     */
+    public boolean hasChanged(WebDriver driver) {
+        String signature;
+        try {
+            signature = String.valueOf(((JavascriptExecutor) driver).executeScript(SIGNATURE_SCRIPT));
+        } catch (WebDriverException e) {
+            lastSignature = null;
+            return true;
+        }
+        boolean changed = !signature.equals(lastSignature);
+        lastSignature = signature;
+        return changed;
+    }
+}
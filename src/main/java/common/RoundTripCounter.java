@@ -0,0 +1,90 @@
+package common;
+
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebDriver listener that counts the commands sent to the browser driver.
+ * <p>
+ * The count is kept per thread. Page actions take a {@link #mark()} before they start and
+ * {@link #record(String, long)} the difference when they are done, which gives the number of
+ * WebDriver HTTP round-trips each action costs.
+ */
+public class RoundTripCounter implements WebDriverListener {
+
+    /**
+     * Calls that only return a local helper object and never reach the browser driver.
+     */
+    private static final Set<String> LOCAL_CALLS = new HashSet<>(Arrays.asList(
+            "manage", "switchTo", "navigate", "timeouts", "window", "logs",
+            "getWrappedDriver", "getWrappedElement", "toString", "hashCode", "equals"));
+
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+    private static final Map<String, LongAdder[]> ACTIONS = new ConcurrentHashMap<>();
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (!LOCAL_CALLS.contains(method.getName())) {
+            COUNT.get()[0]++;
+        }
+    }
+
+    /**
+     * Returns the number of WebDriver commands the current thread has sent so far.
+     *
+     * @return Current command count of the thread
+     */
+    public static long mark() {
+        return COUNT.get()[0];
+    }
+
+    /**
+     * Records the commands the current thread sent since the given mark against an action.
+     *
+     * @param action Name of the page action
+     * @param mark   Command count returned by {@link #mark()} when the action started
+     */
+    public static void record(String action, long mark) {
+        LongAdder[] totals = ACTIONS.computeIfAbsent(action, a -> new LongAdder[]{new LongAdder(), new LongAdder()});
+        totals[0].increment();
+        totals[1].add(COUNT.get()[0] - mark);
+    }
+
+    /**
+     * Returns the average number of round-trips recorded for an action.
+     *
+     * @param action Name of the page action
+     * @return Average round-trips per invocation, or 0 if the action was not recorded
+     */
+    public static double getAverage(String action) {
+        LongAdder[] totals = ACTIONS.get(action);
+        if (totals == null || totals[0].sum() == 0) {
+            return 0;
+        }
+        return (double) totals[1].sum() / totals[0].sum();
+    }
+
+    /**
+     * Builds a summary of the recorded actions, one line per action.
+     *
+     * @return Summary with invocations, total and average round-trips per action
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder("WebDriver round-trips per action:");
+        for (Map.Entry<String, LongAdder[]> entry : new TreeMap<>(ACTIONS).entrySet()) {
+            long invocations = entry.getValue()[0].sum();
+            long roundTrips = entry.getValue()[1].sum();
+            summary.append(String.format("%n  %-36s calls=%-8d roundTrips=%-10d avg=%.2f",
+                    entry.getKey(), invocations, roundTrips, invocations == 0 ? 0 : (double) roundTrips / invocations));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,331 @@
+package common;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Store of the recent duration of every scenario, used to run the longest scenarios first and to split the
+ * suite into shards that take about the same time.
+ * <p>
+ * Scenarios are keyed by their feature file path relative to the project and the line of the scenario, or of
+ * the example row for scenario outlines. The store is a text file of "key=milliseconds" lines named by the
+ * "scenario.timings.file" system property (default test-output/CucumberReports/scenario-timings.txt); machines
+ * running shards of the same suite must share it to get the same split.
+ * <p>
+ * A run never writes the store it is scheduled from. The {@link ScenarioTimingsPlugin} writes the duration of
+ * each scenario, with its background steps and hooks, to a run file of its own (see {@link #writeRun(Map)}),
+ * and {@link #merge(Path)} adds the run files to the store as a moving average. Sharded runs merge in a
+ * separate step after all shards finished, by running this class: the run files of all shards are collected
+ * into the {@link #runDirectory()} and merged with "java common.ScenarioTimings".
+ * <p>
+ * {@link #schedule(List, Function)} is configured with system properties: "shard.count" (default 1),
+ * "shard.index" (0-based, default 0) and "scenario.order", "duration" for the longest scenarios first
+ * (default) or "file" to keep the file order within the shard.
+ */
+public final class ScenarioTimings {
+
+    /**
+     * Weight of the latest run in the stored average.
+     */
+    private static final double LATEST_WEIGHT = 0.5;
+
+    private final Path file;
+    private final Map<String, Long> millis = new TreeMap<>();
+
+    /**
+     * Constructor to load a store; a missing file is an empty store.
+     *
+     * @param file The file of the store.
+     */
+    public ScenarioTimings(Path file) {
+        this.file = file;
+        if (Files.exists(file)) {
+            try {
+                millis.putAll(read(file));
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Not able to read scenario timings from " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Load the store named by the "scenario.timings.file" system property.
+     *
+     * @return The loaded store.
+     */
+    public static ScenarioTimings fromSystemProperties() {
+        return new ScenarioTimings(Paths.get(System.getProperty("scenario.timings.file",
+                Paths.get("test-output", "CucumberReports", "scenario-timings.txt").toString())));
+    }
+
+    /**
+     * Build the key of a scenario.
+     *
+     * @param uri  The URI of the feature file, absolute or as written in the Cucumber JSON report.
+     * @param line The line of the scenario, or of the example row of a scenario outline.
+     * @return The key of the scenario in the store.
+     */
+    public static String key(String uri, int line) {
+        String path = uri;
+        if (path.startsWith("classpath:")) {
+            path = path.substring("classpath:".length());
+        } else if (path.startsWith("file:")) {
+            URI fileUri = URI.create(path);
+            Path absolute = (fileUri.isOpaque() ? Paths.get(fileUri.getSchemeSpecificPart()) : Paths.get(fileUri))
+                    .toAbsolutePath().normalize();
+            Path projectDir = Paths.get(System.getProperty("user.dir")).toAbsolutePath().normalize();
+            path = (absolute.startsWith(projectDir) ? projectDir.relativize(absolute) : absolute).toString();
+        }
+        return path.replace('\\', '/') + ":" + line;
+    }
+
+    /**
+     * Get the stored duration of a scenario.
+     *
+     * @param key The key of the scenario, see {@link #key(String, int)}.
+     * @return The duration in milliseconds, or -1 if the scenario has not run yet.
+     */
+    public long getMillis(String key) {
+        Long duration = millis.get(key);
+        return duration == null ? -1 : duration;
+    }
+
+    /**
+     * Get the number of scenarios with a stored duration.
+     *
+     * @return The number of scenarios.
+     */
+    public int size() {
+        return millis.size();
+    }
+
+    /**
+     * Select the scenarios of the shard given by the system properties, in the configured order.
+     *
+     * @param scenarios The scenarios of the whole suite, in file order.
+     * @param key       Function returning the key of a scenario.
+     * @param <T>       The type of the scenarios.
+     * @return The scenarios of the shard.
+     */
+    public <T> List<T> schedule(List<T> scenarios, Function<T, String> key) {
+        int shardCount = Integer.getInteger("shard.count", 1);
+        int shardIndex = Integer.getInteger("shard.index", 0);
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("shard.index must be between 0 and shard.count - 1, was "
+                    + shardIndex + " of " + shardCount);
+        }
+        List<T> shard = shard(scenarios, key, shardIndex, shardCount);
+        if (!"file".equalsIgnoreCase(System.getProperty("scenario.order", "duration"))) {
+            return shard;
+        }
+        Set<T> selected = Collections.newSetFromMap(new IdentityHashMap<>());
+        selected.addAll(shard);
+        List<T> fileOrder = new ArrayList<>(shard.size());
+        for (T scenario : scenarios) {
+            if (selected.contains(scenario)) {
+                fileOrder.add(scenario);
+            }
+        }
+        return fileOrder;
+    }
+
+    /**
+     * Split scenarios into shards with about the same predicted duration. The scenarios are handed out longest
+     * first, each to the shard with the least predicted time so far. Scenarios without a stored duration are
+     * predicted to take the average of the stored ones. The split only depends on the scenarios and the store,
+     * so every shard computes the same split.
+     *
+     * @param scenarios  The scenarios of the whole suite, in file order.
+     * @param key        Function returning the key of a scenario.
+     * @param shardIndex The 0-based index of the shard to return.
+     * @param shardCount The number of shards.
+     * @param <T>        The type of the scenarios.
+     * @return The scenarios of the shard, longest first; scenarios of equal duration keep their file order.
+     */
+    public <T> List<T> shard(List<T> scenarios, Function<T, String> key, int shardIndex, int shardCount) {
+        long average = Math.max(1, Math.round(millis.values().stream().mapToLong(Long::longValue).average().orElse(1)));
+        Map<T, Long> predicted = new IdentityHashMap<>();
+        for (T scenario : scenarios) {
+            long duration = getMillis(key.apply(scenario));
+            predicted.put(scenario, duration < 0 ? average : duration);
+        }
+        List<T> longestFirst = new ArrayList<>(scenarios);
+        longestFirst.sort(Comparator.comparing(predicted::get, Comparator.reverseOrder()));
+
+        long[] loads = new long[shardCount];
+        List<T> shard = new ArrayList<>();
+        for (T scenario : longestFirst) {
+            int target = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (loads[i] < loads[target]) {
+                    target = i;
+                }
+            }
+            loads[target] += predicted.get(scenario);
+            if (target == shardIndex) {
+                shard.add(scenario);
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Get the directory the runs write their scenario durations to, named by the "scenario.timings.runs"
+     * system property (default: the "scenario-timings-runs" folder next to the store).
+     *
+     * @return The directory of the run files.
+     */
+    public static Path runDirectory() {
+        String configured = System.getProperty("scenario.timings.runs");
+        if (configured != null) {
+            return Paths.get(configured);
+        }
+        Path store = fromSystemProperties().file.toAbsolutePath();
+        return store.getParent().resolve("scenario-timings-runs");
+    }
+
+    /**
+     * Check whether the run merges its durations into the store as soon as it finished. This is the case when
+     * the "scenario.timings.merge" system property is true, by default only for runs that are not sharded,
+     * since other shards may still be scheduling from the store.
+     *
+     * @return true if the run merges its durations itself.
+     */
+    public static boolean isMergedAfterRun() {
+        String configured = System.getProperty("scenario.timings.merge");
+        return configured == null ? Integer.getInteger("shard.count", 1) == 1 : Boolean.parseBoolean(configured);
+    }
+
+    /**
+     * Write the scenario durations of a finished run to a file of its own in the {@link #runDirectory()}. The
+     * store is left untouched, see {@link #merge(Path)}.
+     *
+     * @param durations The duration in milliseconds of every scenario that ran, by key.
+     * @return The written run file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static Path writeRun(Map<String, Long> durations) throws IOException {
+        Path directory = runDirectory();
+        Path runFile = directory.resolve("shard-" + Integer.getInteger("shard.index", 0) + "-of-"
+                + Integer.getInteger("shard.count", 1) + "-" + ProcessHandle.current().pid() + "-"
+                + System.currentTimeMillis() + ".txt");
+        write(runFile, new TreeMap<>(durations), "# Scenario durations in milliseconds of one run, merged by ScenarioTimings");
+        return runFile;
+    }
+
+    /**
+     * Add the durations of the run files in a directory to the store as a moving average, save the store and
+     * delete the merged run files. Run files are merged in the order they were written.
+     *
+     * @param runDirectory The directory of the run files, see {@link #runDirectory()}.
+     * @return The number of scenario durations merged.
+     */
+    public int merge(Path runDirectory) {
+        if (!Files.isDirectory(runDirectory)) {
+            return 0;
+        }
+        List<Path> runFiles;
+        try (Stream<Path> files = Files.list(runDirectory)) {
+            runFiles = files.filter(path -> path.getFileName().toString().endsWith(".txt")).collect(Collectors.toList());
+        } catch (IOException e) {
+            System.out.println("Not able to list scenario timing runs in " + runDirectory + ": " + e.getMessage());
+            return 0;
+        }
+        runFiles.sort(Comparator.comparing(ScenarioTimings::lastModified));
+        List<Path> mergedFiles = new ArrayList<>();
+        int merged = 0;
+        for (Path runFile : runFiles) {
+            Map<String, Long> durations;
+            try {
+                durations = read(runFile);
+            } catch (IOException | NumberFormatException e) {
+                // Left in place, e.g. for a file another shard is still copying
+                System.out.println("Not able to read scenario timings from " + runFile + ": " + e.getMessage());
+                continue;
+            }
+            for (Map.Entry<String, Long> duration : durations.entrySet()) {
+                long latest = Math.max(1, duration.getValue());
+                Long previous = millis.get(duration.getKey());
+                millis.put(duration.getKey(), previous == null ? latest
+                        : Math.round(LATEST_WEIGHT * latest + (1 - LATEST_WEIGHT) * previous));
+                merged++;
+            }
+            mergedFiles.add(runFile);
+        }
+        if (mergedFiles.isEmpty()) {
+            return 0;
+        }
+        try {
+            write(file, millis, "# Scenario durations in milliseconds, updated after every run");
+            for (Path runFile : mergedFiles) {
+                Files.deleteIfExists(runFile);
+            }
+            System.out.println("Scenario timings of " + mergedFiles.size() + " runs merged into " + file.toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Not able to save scenario timings to " + file + ": " + e.getMessage());
+        }
+        return merged;
+    }
+
+    /**
+     * Merge the run files into the store, as a separate step after all shards finished.
+     *
+     * @param args Not used; the store and run directory are taken from the system properties.
+     */
+    public static void main(String[] args) {
+        fromSystemProperties().merge(runDirectory());
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Map<String, Long> read(Path path) throws IOException {
+        Map<String, Long> durations = new TreeMap<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int separator = line.lastIndexOf('=');
+            if (separator > 0 && !line.startsWith("#")) {
+                durations.put(line.substring(0, separator).trim(), Long.parseLong(line.substring(separator + 1).trim()));
+            }
+        }
+        return durations;
+    }
+
+    private static void write(Path path, Map<String, Long> durations, String comment) throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "scenario-timings", ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(comment + "\n");
+            for (Map.Entry<String, Long> duration : durations.entrySet()) {
+                out.write(duration.getKey() + "=" + duration.getValue() + "\n");
+            }
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
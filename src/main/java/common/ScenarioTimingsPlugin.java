@@ -0,0 +1,53 @@
+package common;
+
+import io.cucumber.plugin.ConcurrentEventListener;
+import io.cucumber.plugin.event.EventPublisher;
+import io.cucumber.plugin.event.Status;
+import io.cucumber.plugin.event.TestCase;
+import io.cucumber.plugin.event.TestCaseFinished;
+import io.cucumber.plugin.event.TestRunFinished;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cucumber plugin that records the duration of every scenario that ran, with its background steps and hooks,
+ * and writes them to a run file of this run when the run finishes, see {@link ScenarioTimings#writeRun(Map)}.
+ * Runs that are not sharded merge the run file into the store right away.
+ * <p>
+ * Skipped, pending and undefined scenarios keep their stored duration.
+ */
+public class ScenarioTimingsPlugin implements ConcurrentEventListener {
+
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    @Override
+    public void setEventPublisher(EventPublisher publisher) {
+        publisher.registerHandlerFor(TestCaseFinished.class, event -> {
+            Status status = event.getResult().getStatus();
+            if (status == Status.PASSED || status == Status.FAILED) {
+                TestCase testCase = event.getTestCase();
+                durations.put(ScenarioTimings.key(testCase.getUri().toString(), testCase.getLocation().getLine()),
+                        Math.max(1, event.getResult().getDuration().toMillis()));
+            }
+        });
+        publisher.registerHandlerFor(TestRunFinished.class, event -> finish());
+    }
+
+    private void finish() {
+        if (durations.isEmpty()) {
+            return;
+        }
+        try {
+            System.out.println("Scenario timings of " + durations.size() + " scenarios written to "
+                    + ScenarioTimings.writeRun(durations).toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Not able to write scenario timings: " + e.getMessage());
+            return;
+        }
+        if (ScenarioTimings.isMergedAfterRun()) {
+            ScenarioTimings.fromSystemProperties().merge(ScenarioTimings.runDirectory());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package common;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Background pipeline that turns raw screenshot captures into persisted images.
+ * <p>
+ * The test thread only fetches the Base64 screenshot from the browser and hands it to a shared, bounded
+ * executor that decodes it and saves it in the {@link ScreenshotStore}, where identical frames are stored once.
+ * When the queue is full the submitting thread processes the capture itself, which slows capturing down to
+ * what the pipeline can handle. Each scenario collects its captures in a {@link Batch} and flushes it at the
+ * end of the scenario, which waits for the pending captures and hands them over in capture order.
+ */
+public final class ScreenshotPipeline {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    private static final ThreadPoolExecutor EXECUTOR = new ThreadPoolExecutor(
+            Integer.getInteger("screenshot.pipeline.threads", 2),
+            Integer.getInteger("screenshot.pipeline.threads", 2),
+            30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Integer.getInteger("screenshot.pipeline.queue", 64)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "screenshot-pipeline-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private ScreenshotPipeline() {
+    }
+
+    /**
+     * Start a batch collecting the captures of one scenario.
+     *
+     * @return A new, empty batch.
+     */
+    public static Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * A processed screenshot.
+     */
+    public static final class Capture {
+        private final String name;
+        private final byte[] png;
+        private final Path path;
+
+        private Capture(String name, byte[] png, Path path) {
+            this.name = name;
+            this.png = png;
+            this.path = path;
+        }
+
+        /**
+         * Get the name the capture is attached under.
+         *
+         * @return The name of the capture.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the decoded PNG image.
+         *
+         * @return The PNG bytes.
+         */
+        public byte[] getPng() {
+            return png;
+        }
+
+        /**
+         * Get the stored image.
+         *
+         * @return The path of the image in the {@link ScreenshotStore}.
+         */
+        public Path getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * The captures of a single scenario. A batch is used by the scenario thread only.
+     */
+    public static final class Batch {
+
+        private final List<Future<Capture>> pending = new ArrayList<>();
+        private final List<String> failedNames = new ArrayList<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Queue a raw capture for processing.
+         *
+         * @param base64Png The screenshot as returned by the browser, Base64 encoded.
+         * @param name      The name the capture is attached under.
+         */
+        public void submit(String base64Png, String name) {
+            pending.add(EXECUTOR.submit(() -> process(base64Png, name)));
+            failedNames.add(null);
+        }
+
+        /**
+         * Attach the most recent capture a second time under the given name instead of taking a new screenshot.
+         *
+         * @param name The name the capture is attached under again, e.g. for a failed step.
+         */
+        public void reuseLast(String name) {
+            if (!failedNames.isEmpty()) {
+                failedNames.set(failedNames.size() - 1, name);
+            }
+        }
+
+        /**
+         * Check whether captures are waiting to be flushed.
+         *
+         * @return true if the batch holds captures.
+         */
+        public boolean isEmpty() {
+            return pending.isEmpty();
+        }
+
+        /**
+         * Wait for all captures of the batch and hand them to the consumer in capture order. Captures
+         * marked with {@link #reuseLast(String)} are handed over a second time under their extra name.
+         * The batch is empty afterwards.
+         *
+         * @param consumer Receives each processed capture, e.g. to attach it to the scenario.
+         */
+        public void flush(BiConsumer<String, Capture> consumer) {
+            try {
+                for (int i = 0; i < pending.size(); i++) {
+                    Capture capture;
+                    try {
+                        capture = pending.get(i).get();
+                    } catch (ExecutionException e) {
+                        System.out.println("Exception while processing screenshot: " + e.getCause());
+                        continue;
+                    }
+                    consumer.accept(capture.getName(), capture);
+                    if (failedNames.get(i) != null) {
+                        consumer.accept(failedNames.get(i), capture);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pending.clear();
+                failedNames.clear();
+            }
+        }
+
+        private Capture process(String base64Png, String name) {
+            byte[] png = Base64.getMimeDecoder().decode(base64Png);
+            return new Capture(name, png, ScreenshotStore.getInstance().store(png));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package common;
+
+/**
+ * When step screenshots are captured and kept, read from the "screenshot.policy" system property:
+ * <ul>
+ *     <li>always - every step is captured and attached to the report (default)</li>
+ *     <li>on-failure - only the failing step is captured</li>
+ *     <li>last-N - the last N steps are kept in memory and only attached when the scenario fails, e.g. last-5</li>
+ * </ul>
+ */
+public final class ScreenshotPolicy {
+
+    /**
+     * The capture modes.
+     */
+    public enum Mode {
+        ALWAYS, ON_FAILURE, LAST_N
+    }
+
+    private final Mode mode;
+    private final int lastN;
+
+    private ScreenshotPolicy(Mode mode, int lastN) {
+        this.mode = mode;
+        this.lastN = lastN;
+    }
+
+    /**
+     * Read the policy from the "screenshot.policy" system property.
+     *
+     * @return The configured policy.
+     */
+    public static ScreenshotPolicy fromSystemProperties() {
+        return parse(System.getProperty("screenshot.policy", "always"));
+    }
+
+    /**
+     * Parse a policy setting.
+     *
+     * @param setting One of "always", "on-failure" or "last-N" with N a positive number.
+     * @return The parsed policy.
+     */
+    public static ScreenshotPolicy parse(String setting) {
+        String value = setting.trim().toLowerCase();
+        if (value.equals("always")) {
+            return new ScreenshotPolicy(Mode.ALWAYS, 0);
+        }
+        if (value.equals("on-failure")) {
+            return new ScreenshotPolicy(Mode.ON_FAILURE, 0);
+        }
+        if (value.startsWith("last-")) {
+            try {
+                int lastN = Integer.parseInt(value.substring("last-".length()));
+                if (lastN > 0) {
+                    return new ScreenshotPolicy(Mode.LAST_N, lastN);
+                }
+            } catch (NumberFormatException e) {
+                // Reported below
+            }
+        }
+        throw new IllegalArgumentException("Unknown screenshot policy '" + setting + "', expected always, on-failure or last-N.");
+    }
+
+    /**
+     * Get the capture mode.
+     *
+     * @return The mode of this policy.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the number of step screenshots kept in memory in {@link Mode#LAST_N} mode.
+     *
+     * @return The number of kept screenshots, 0 for the other modes.
+     */
+    public int getLastN() {
+        return lastN;
+    }
+
+    @Override
+    public String toString() {
+        return mode == Mode.LAST_N ? "last-" + lastN : mode == Mode.ALWAYS ? "always" : "on-failure";
+    }
+}
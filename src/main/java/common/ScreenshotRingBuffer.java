@@ -0,0 +1,106 @@
+package common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Fixed-size, in-memory buffer of the most recent step screenshots of a scenario.
+ * <p>
+ * The buffer keeps at most the configured number of captures and drops the oldest ones once the capacity or
+ * the memory cap is exceeded. The newest capture is always kept, even if it exceeds the memory cap on its own.
+ */
+public class ScreenshotRingBuffer {
+
+    private final int capacity;
+    private final long maxBytes;
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private long bytes = 0;
+
+    /**
+     * Constructor to initialize the buffer.
+     *
+     * @param capacity The maximum number of captures kept.
+     * @param maxBytes The maximum memory the kept captures may use.
+     */
+    public ScreenshotRingBuffer(int capacity, long maxBytes) {
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Add a capture, dropping the oldest captures that no longer fit.
+     *
+     * @param name      The name the capture is attached under.
+     * @param base64Png The screenshot as returned by the browser, Base64 encoded.
+     */
+    public void add(String name, String base64Png) {
+        entries.addLast(new Entry(name, base64Png));
+        bytes += base64Png.length();
+        while (entries.size() > 1 && (entries.size() > capacity || bytes > maxBytes)) {
+            bytes -= entries.removeFirst().base64Png.length();
+        }
+    }
+
+    /**
+     * Check whether the buffer holds captures.
+     *
+     * @return true if no captures are kept.
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Get the memory used by the kept captures.
+     *
+     * @return The size of the kept captures in bytes.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Remove and return all kept captures, oldest first.
+     *
+     * @return The kept captures.
+     */
+    public List<Entry> drain() {
+        List<Entry> drained = new ArrayList<>(entries);
+        entries.clear();
+        bytes = 0;
+        return drained;
+    }
+
+    /**
+     * A buffered capture.
+     */
+    public static final class Entry {
+        private final String name;
+        private final String base64Png;
+
+        private Entry(String name, String base64Png) {
+            this.name = name;
+            this.base64Png = base64Png;
+        }
+
+        /**
+         * Get the name the capture is attached under.
+         *
+         * @return The name of the capture.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the screenshot as returned by the browser.
+         *
+         * @return The Base64 encoded PNG.
+         */
+        public String getBase64Png() {
+            return base64Png;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package common;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for screenshots.
+ * <p>
+ * Every image is stored once under "objects/", named by the SHA-256 hash of the captured PNG, so repeated
+ * frames cost a hash instead of a write. Stored images can be downscaled and re-encoded as JPEG. Named
+ * screenshots are hard links to the stored image where the file system reports link counts, or copies
+ * otherwise.
+ * <p>
+ * Everything under the root counts against the disk quota, hard links once. The files left by earlier runs are
+ * indexed once, oldest first, and when the quota is exceeded the least recently used of them are deleted first,
+ * stored images and named copies alike. Files that are still referenced are never deleted: images and named
+ * screenshots saved or reused by this run, which its reports link to, and images with a named screenshot linked
+ * to them. A run whose own screenshots exceed the quota therefore goes over it with a warning.
+ * <p>
+ * The shared store is configured with system properties:
+ * <ul>
+ *     <li>screenshot.store.dir - root directory (default test-output/Screenshots)</li>
+ *     <li>screenshot.store.maxBytes - disk quota of the stored images (default 512 MB)</li>
+ *     <li>screenshot.store.scale - scale factor applied to stored images (default 1.0)</li>
+ *     <li>screenshot.store.format - png or jpg (default png)</li>
+ *     <li>screenshot.store.quality - JPEG quality between 0 and 1 (default 0.8)</li>
+ *     <li>screenshot.report.dir - directory of the reports, which link to the stored images with relative paths
+ *     (default test-output/Spark, a sibling of the other report directories)</li>
+ *     <li>screenshot.store.link - prefix used instead of the relative path to link stored images from the
+ *     reports, followed by the path relative to the root, e.g. the URL the root is published under</li>
+ * </ul>
+ */
+public final class ScreenshotStore {
+
+    private static final ScreenshotStore INSTANCE = new ScreenshotStore(
+            Paths.get(System.getProperty("screenshot.store.dir", Paths.get("test-output", "Screenshots").toString())),
+            Long.getLong("screenshot.store.maxBytes", 512L << 20),
+            Double.parseDouble(System.getProperty("screenshot.store.scale", "1.0")),
+            System.getProperty("screenshot.store.format", "png"),
+            Float.parseFloat(System.getProperty("screenshot.store.quality", "0.8")));
+
+    private static final String LINK_PREFIX = System.getProperty("screenshot.store.link");
+    private static final Path REPORT_DIR = Paths.get(System.getProperty("screenshot.report.dir",
+            Paths.get("test-output", "Spark").toString())).toAbsolutePath().normalize();
+
+    private final Path root;
+    private final Path objects;
+    private final long maxBytes;
+    private final double scale;
+    private final String format;
+    private final float quality;
+    private final boolean hardLinks;
+    private final Set<Path> referenced = ConcurrentHashMap.newKeySet();
+    /**
+     * Files left by earlier runs that may be evicted, least recently used first, with their sizes.
+     */
+    private final LinkedHashMap<Path, Long> evictable = new LinkedHashMap<>();
+    private boolean scanned = false;
+    private boolean overQuotaReported = false;
+    private long usedBytes = 0;
+    private long stored = 0;
+    private long duplicates = 0;
+    private long evicted = 0;
+
+    /**
+     * Constructor to initialize a store with its own settings.
+     *
+     * @param root     The root directory of the store.
+     * @param maxBytes The disk quota of the stored images.
+     * @param scale    The scale factor applied to stored images, 1.0 keeps the captured size.
+     * @param format   The format of stored images, "png" or "jpg".
+     * @param quality  The JPEG quality between 0 and 1.
+     */
+    public ScreenshotStore(Path root, long maxBytes, double scale, String format, float quality) {
+        String normalizedFormat = format.trim().toLowerCase();
+        if (normalizedFormat.equals("jpeg")) {
+            normalizedFormat = "jpg";
+        }
+        if (!normalizedFormat.equals("png") && !normalizedFormat.equals("jpg")) {
+            throw new IllegalArgumentException("Unsupported screenshot format '" + format + "', expected png or jpg.");
+        }
+        this.root = root.toAbsolutePath().normalize();
+        this.objects = this.root.resolve("objects");
+        this.maxBytes = maxBytes;
+        this.scale = scale;
+        this.format = normalizedFormat;
+        this.quality = quality;
+        this.hardLinks = this.root.getFileSystem().supportedFileAttributeViews().contains("unix");
+    }
+
+    /**
+     * Get the store shared by the whole suite.
+     *
+     * @return The suite-wide store.
+     */
+    public static ScreenshotStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the root directory of the store.
+     *
+     * @return The absolute root directory.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Store a screenshot unless an identical one is stored already. The image is kept for the rest of the run,
+     * so reports can link to it.
+     *
+     * @param png The captured PNG.
+     * @return The path of the stored image.
+     */
+    public Path store(byte[] png) {
+        String hash = sha256(png);
+        Path object = objects.resolve(hash.substring(0, 2)).resolve(hash + "." + format);
+        referenced.add(object);
+        try {
+            synchronized (this) {
+                scanIfNeeded();
+                evictable.remove(object);
+                if (Files.exists(object)) {
+                    duplicates++;
+                    Files.setLastModifiedTime(object, FileTime.fromMillis(System.currentTimeMillis()));
+                    return object;
+                }
+            }
+            byte[] encoded = encode(png);
+            Files.createDirectories(object.getParent());
+            Path temp = Files.createTempFile(object.getParent(), hash, ".tmp");
+            try {
+                Files.write(temp, encoded);
+                synchronized (this) {
+                    if (Files.exists(object)) {
+                        duplicates++;
+                        return object;
+                    }
+                    Files.move(temp, object, StandardCopyOption.ATOMIC_MOVE);
+                    stored++;
+                    usedBytes += encoded.length;
+                    evictIfNeeded();
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            return object;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store screenshot " + object, e);
+        }
+    }
+
+    /**
+     * Store a screenshot and make it available under a name relative to the root directory.
+     *
+     * @param png      The captured PNG.
+     * @param fileName The name of the screenshot, without extension.
+     * @return The path of the named screenshot.
+     * @throws IllegalArgumentException if the name points outside the root directory or into the stored images.
+     */
+    public Path store(byte[] png, String fileName) {
+        Path named = root.resolve(fileName + "." + format).normalize();
+        if (!named.startsWith(root) || named.startsWith(objects)) {
+            throw new IllegalArgumentException("Screenshot name '" + fileName + "' is outside the store " + root);
+        }
+        Path object = store(png);
+        referenced.add(named);
+        try {
+            Files.createDirectories(named.getParent());
+            synchronized (this) {
+                evictable.remove(named);
+                if (Files.exists(named) && linkCount(named) == 1) {
+                    usedBytes -= Files.size(named);
+                }
+                Files.deleteIfExists(named);
+                boolean linked = false;
+                if (hardLinks) {
+                    try {
+                        Files.createLink(named, object);
+                        linked = true;
+                    } catch (UnsupportedOperationException | FileSystemException e) {
+                        // Falls back to a copy, e.g. on file systems without hard links
+                    }
+                }
+                if (!linked) {
+                    Files.copy(object, named, StandardCopyOption.REPLACE_EXISTING);
+                    usedBytes += Files.size(named);
+                    evictIfNeeded();
+                }
+            }
+            return named;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to save screenshot " + named, e);
+        }
+    }
+
+    /**
+     * Get the link a report uses to refer to a stored screenshot, so the reports keep their images when the
+     * output directory is archived or moved.
+     *
+     * @param path A path returned by this store.
+     * @return The "screenshot.store.link" prefix followed by the path relative to the root when the prefix is
+     * configured, otherwise the path relative to the report directory, or the file URI of the path when the
+     * two do not share a root.
+     */
+    public String link(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (LINK_PREFIX != null && absolute.startsWith(root)) {
+            return LINK_PREFIX + root.relativize(absolute).toString().replace('\\', '/');
+        }
+        if (!REPORT_DIR.getRoot().equals(absolute.getRoot())) {
+            return absolute.toUri().toString();
+        }
+        return REPORT_DIR.relativize(absolute).toString().replace('\\', '/');
+    }
+
+    /**
+     * Get the disk space used by the stored images.
+     *
+     * @return The size of the stored images in bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ScreenshotStore[root=%s, stored=%d, duplicates=%d, evicted=%d, used=%dKB]",
+                root, stored, duplicates, evicted, usedBytes / 1024);
+    }
+
+    private byte[] encode(byte[] png) throws IOException {
+        if (scale >= 1.0 && format.equals("png")) {
+            return png;
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        if (image == null) {
+            return png;
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * Math.min(scale, 1.0)));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * Math.min(scale, 1.0)));
+        BufferedImage target = new BufferedImage(width, height,
+                format.equals("jpg") ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(png.length / 2);
+        if (format.equals("png")) {
+            ImageIO.write(target, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(target, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void scanIfNeeded() throws IOException {
+        if (scanned) {
+            return;
+        }
+        scanned = true;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Set<Object> counted = new HashSet<>();
+        Map<Path, BasicFileAttributes> found = new HashMap<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile() || file.getFileName().toString().endsWith(".tmp")) {
+                    continue;
+                }
+                // Hard links share their file key and take the disk space once
+                if (attributes.fileKey() == null || counted.add(attributes.fileKey())) {
+                    usedBytes += attributes.size();
+                }
+                found.put(file, attributes);
+            }
+        }
+        List<Path> oldestFirst = new ArrayList<>(found.keySet());
+        oldestFirst.sort(Comparator.comparing(file -> found.get(file).lastModifiedTime()));
+        for (Path file : oldestFirst) {
+            evictable.put(file, found.get(file).size());
+        }
+    }
+
+    /**
+     * Deletes the least recently used files of earlier runs until the store is below the quota. Files that
+     * turn out to be linked to another name are dropped from the index, so every file is looked at once.
+     */
+    private void evictIfNeeded() throws IOException {
+        if (usedBytes <= maxBytes) {
+            return;
+        }
+        // Evict a little below the quota so the next stores do not evict again right away
+        long target = maxBytes - maxBytes / 10;
+        Iterator<Map.Entry<Path, Long>> oldestFirst = evictable.entrySet().iterator();
+        while (usedBytes > target && oldestFirst.hasNext()) {
+            Map.Entry<Path, Long> entry = oldestFirst.next();
+            oldestFirst.remove();
+            Path file = entry.getKey();
+            if (Files.exists(file) && linkCount(file) == 1 && Files.deleteIfExists(file)) {
+                usedBytes -= entry.getValue();
+                evicted++;
+            }
+        }
+        if (usedBytes > maxBytes && !overQuotaReported) {
+            overQuotaReported = true;
+            System.out.println("Screenshot store " + root + " uses " + usedBytes / 1024 + "KB, more than its quota of "
+                    + maxBytes / 1024 + "KB, in screenshots that are still referenced");
+        }
+    }
+
+    /**
+     * Number of names of a file; 1 where the file system does not report link counts, since named screenshots
+     * are copies there.
+     */
+    private int linkCount(Path file) throws IOException {
+        return hardLinks ? ((Number) Files.getAttribute(file, "unix:nlink")).intValue() : 1;
+    }
+
+    private static String sha256(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -1,23 +1,48 @@
 package common;
 
-import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.OutputType;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
-import java.io.File;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * @author Gopi Appapuram
  * 
  * Utility class to capture screenshots in WebDriver tests.
+ * <p>
+ * Screenshots are saved in the {@link ScreenshotStore}, so identical frames are stored once and the file
+ * names are relative to its root directory ("screenshot.store.dir" system property). Absolute names and
+ * names pointing outside the root are written to that path as a plain PNG file, as before the store.
  */
 public class ScreenshotUtility {
 
+	private static final boolean BATCH_ELEMENTS = Boolean.parseBoolean(System.getProperty("screenshot.elements.batch", "true"));
+
+	private static final String ELEMENT_RECTS_SCRIPT =
+			"var rects = [];"
+					+ "for (var i = 0; i < arguments[0].length; i++) {"
+					+ "  var r = arguments[0][i].getBoundingClientRect();"
+					+ "  rects.push([r.left, r.top, r.right, r.bottom]);"
+					+ "}"
+					+ "return [window.innerWidth, window.innerHeight, rects];";
+
 	private WebDriver driver;
+	private final ScreenshotStore store;
 
 	/**
 	 * Constructor to initialize ScreenshotUtility with the WebDriver instance.
@@ -25,7 +50,18 @@ public class ScreenshotUtility {
 	 * @param driver The WebDriver instance to use for taking screenshots.
 	 */
 	public ScreenshotUtility(WebDriver driver) {
+		this(driver, ScreenshotStore.getInstance());
+	}
+
+	/**
+	 * Constructor to initialize ScreenshotUtility with the WebDriver instance and its own store.
+	 *
+	 * @param driver The WebDriver instance to use for taking screenshots.
+	 * @param store  The store the screenshots are saved in.
+	 */
+	public ScreenshotUtility(WebDriver driver, ScreenshotStore store) {
 		this.driver = driver;
+		this.store = store;
 	}
 
 	/**
@@ -37,10 +73,9 @@ public class ScreenshotUtility {
 	public void takeScreenshot(String fileName) {
 		try {
 			// Capture screenshot of the current page
-			File scrFile = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-			FileUtils.copyFile(scrFile, new File(
-					"D:\\ESoft_Solutions\\AutomationPractice\\BDD_Framework\\ScreenShots\\" + fileName + ".png"));
-		} catch (IOException e) {
+			byte[] png = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+			save(png, fileName);
+		} catch (UncheckedIOException e) {
 			System.out.println("Exception while taking screenshot: " + e.getMessage());
 		}
 	}
@@ -55,9 +90,9 @@ public class ScreenshotUtility {
 	public void takeScreenshotOfElement(WebElement element, String fileName) {
 		try {
 			// Capture screenshot of the specific element
-			File scrFile = element.getScreenshotAs(OutputType.FILE);
-			FileUtils.copyFile(scrFile, new File(fileName + ".png"));
-		} catch (IOException e) {
+			byte[] png = element.getScreenshotAs(OutputType.BYTES);
+			save(png, fileName);
+		} catch (UncheckedIOException e) {
 			System.out.println("Exception while taking element screenshot: " + e.getMessage());
 		}
 	}
@@ -65,23 +100,104 @@ public class ScreenshotUtility {
 	/**
 	 * Captures a screenshot of the specified list of WebElements and saves it with
 	 * the specified file name.
+	 * <p>
+	 * The bounding rectangles of all elements are read with one script call and the
+	 * page is captured once; each element is then cropped from that capture, in
+	 * parallel. Elements outside the viewport are captured one by one. Setting the
+	 * "screenshot.elements.batch" system property to false captures every element
+	 * separately.
 	 *
 	 * @param elements The list of WebElements to capture.
 	 * @param fileName The name to give to the screenshot file.
 	 */
 	public void takeScreenshotOfElements(List<WebElement> elements, String fileName) {
 	    try {
-	        for (int i = 0; i < elements.size(); i++) {
+	        List<Integer> separately = BATCH_ELEMENTS && !elements.isEmpty()
+	                ? cropElements(elements, fileName)
+	                : IntStream.range(0, elements.size()).boxed().collect(Collectors.toList());
+	        for (int i : separately) {
 	            WebElement element = elements.get(i);
-	            File scrFile = element.getScreenshotAs(OutputType.FILE);
-	            FileUtils.copyFile(scrFile, new File(fileName + "_" + i + ".png"));
-//	            File screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-//	            FileUtils.copyFile(screenshot, new File(fileName + "_" + i + ".png"));
-
+	            byte[] png = element.getScreenshotAs(OutputType.BYTES);
+	            save(png, fileName + "_" + i);
 	        }
-	    } catch (IOException e) {
+	    } catch (UncheckedIOException e) {
 	        System.out.println("Exception while taking element screenshot: " + e.getMessage());
 	    }
 	}
 
+	/**
+	 * Crop the elements that are fully visible in the viewport from a single capture.
+	 *
+	 * @return The indexes of the elements that could not be cropped.
+	 */
+	private List<Integer> cropElements(List<WebElement> elements, String fileName) {
+	    List<?> result = (List<?>) ((JavascriptExecutor) driver).executeScript(ELEMENT_RECTS_SCRIPT, elements);
+	    double viewportWidth = ((Number) result.get(0)).doubleValue();
+	    double viewportHeight = ((Number) result.get(1)).doubleValue();
+	    List<?> rects = (List<?>) result.get(2);
+
+	    BufferedImage page;
+	    try {
+	        page = ImageIO.read(new ByteArrayInputStream(((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES)));
+	    } catch (IOException e) {
+	        throw new UncheckedIOException(e);
+	    }
+	    if (page == null) {
+	        return IntStream.range(0, elements.size()).boxed().collect(Collectors.toList());
+	    }
+	    // Pixels per CSS pixel, taken from the capture itself so it also covers zoom and device pixel ratio
+	    double scaleX = page.getWidth() / viewportWidth;
+	    double scaleY = page.getHeight() / viewportHeight;
+
+	    List<Integer> separately = new ArrayList<>();
+	    List<int[]> crops = new ArrayList<>();
+	    for (int i = 0; i < rects.size(); i++) {
+	        List<?> rect = (List<?>) rects.get(i);
+	        double left = ((Number) rect.get(0)).doubleValue();
+	        double top = ((Number) rect.get(1)).doubleValue();
+	        double right = ((Number) rect.get(2)).doubleValue();
+	        double bottom = ((Number) rect.get(3)).doubleValue();
+	        int x = (int) Math.floor(left * scaleX);
+	        int y = (int) Math.floor(top * scaleY);
+	        int width = Math.min((int) Math.ceil(right * scaleX), page.getWidth()) - x;
+	        int height = Math.min((int) Math.ceil(bottom * scaleY), page.getHeight()) - y;
+	        if (x < 0 || y < 0 || width <= 0 || height <= 0
+	                || right > viewportWidth || bottom > viewportHeight) {
+	            separately.add(i);
+	        } else {
+	            crops.add(new int[]{i, x, y, width, height});
+	        }
+	    }
+
+	    crops.parallelStream().forEach(crop -> {
+	        ByteArrayOutputStream png = new ByteArrayOutputStream();
+	        try {
+	            ImageIO.write(page.getSubimage(crop[1], crop[2], crop[3], crop[4]), "png", png);
+	        } catch (IOException e) {
+	            throw new UncheckedIOException(e);
+	        }
+	        save(png.toByteArray(), fileName + "_" + crop[0]);
+	    });
+	    return separately;
+	}
+
+	/**
+	 * Save a screenshot in the store, or as a plain file when the name points outside of it.
+	 */
+	private void save(byte[] png, String fileName) {
+	    try {
+	        store.store(png, fileName);
+	    } catch (IllegalArgumentException outsideStore) {
+	        Path file = Paths.get(fileName + ".png");
+	        try {
+	            if (file.getParent() != null) {
+	                Files.createDirectories(file.getParent());
+	            }
+	            Files.write(file, png);
+	        } catch (IOException e) {
+	            throw new UncheckedIOException(e);
+	        }
+	    }
+	}
+
 }
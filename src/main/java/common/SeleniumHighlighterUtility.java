@@ -4,13 +4,34 @@ import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Utility class to highlight elements on a web page using JavaScript.
+ * <p>
+ * A whole list of elements is styled with a single script call, and the browser restores the previous
+ * borders with a timer after "highlight.durationMillis" (default 300), so the test thread never waits.
+ * With the "performance.mode" system property set to true, e.g. for CI runs, highlighting is a no-op.
  */
 public class SeleniumHighlighterUtility {
 
+	private static final String HIGHLIGHT_SCRIPT =
+			"var elements = arguments[0], style = arguments[1], previous = [];"
+					+ "for (var i = 0; i < elements.length; i++) {"
+					+ "  previous.push(elements[i].style.border);"
+					+ "  elements[i].style.border = style;"
+					+ "}"
+					+ "setTimeout(function () {"
+					+ "  for (var i = 0; i < elements.length; i++) {"
+					+ "    elements[i].style.border = previous[i];"
+					+ "  }"
+					+ "}, arguments[2]);";
+
+	private static final long HIGHLIGHT_MILLIS = Long.getLong("highlight.durationMillis", 300);
+
+	private static volatile boolean performanceMode = Boolean.parseBoolean(System.getProperty("performance.mode", "false"));
+
 	WebDriver driver;
 	JavascriptExecutor js;
 
@@ -26,23 +47,30 @@ public class SeleniumHighlighterUtility {
 	}
 
 	/**
-	 * Highlights the given WebElement using a default green border.
+	 * Checks whether performance mode is on, in which case no element is highlighted.
 	 *
-	 * @param element The WebElement to highlight.
+	 * @return true if highlighting is turned off.
 	 */
-	public void highlightElement(WebElement element) {
-		// Execute JavaScript to highlight the element
-		js.executeScript("arguments[0].style.border = '2px solid Red'", element);
+	public static boolean isPerformanceMode() {
+		return performanceMode;
+	}
 
-		// Sleep for a short while to see the highlight (optional)
-		try {
-			Thread.sleep(300);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Turns performance mode on or off for the whole suite, overriding the "performance.mode" system property.
+	 *
+	 * @param enabled true to turn highlighting off.
+	 */
+	public static void setPerformanceMode(boolean enabled) {
+		performanceMode = enabled;
+	}
 
-		// Reset the element's border after highlighting
-		js.executeScript("arguments[0].style.border = ''", element);
+	/**
+	 * Highlights the given WebElement using a default red border.
+	 *
+	 * @param element The WebElement to highlight.
+	 */
+	public void highlightElement(WebElement element) {
+		highlight(Collections.singletonList(element), "2px solid Red");
 	}
 
 	/**
@@ -52,41 +80,16 @@ public class SeleniumHighlighterUtility {
 	 * @param highlightStyle The CSS border style to use for highlighting Eg: "2px solid Red".
 	 */
 	public void highlightElementWithSpecifiedBodderAndColour(WebElement element, String highlightStyle) {
-		// Execute JavaScript to highlight the element
-		js.executeScript("arguments[0].style.border = 'highlightStyle'", element);
-
-		// Sleep for a short while to see the highlight (optional)
-		try {
-			Thread.sleep(300);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-
-		// Reset the element's border after highlighting
-		js.executeScript("arguments[0].style.border = ''", element);
+		highlight(Collections.singletonList(element), highlightStyle);
 	}
 
 	/**
-	 * Highlights a list of WebElements using a default red border.
+	 * Highlights a list of WebElements using a default green border.
 	 *
 	 * @param elements The list of WebElements to highlight.
 	 */
 	public void highlightElements(List<WebElement> elements) {
-		for (WebElement element : elements) {
-			// Execute JavaScript to highlight each element
-			js.executeScript("arguments[0].style.border = '2px solid green'", element);
-
-			// Sleep for a short while to see the highlight (optional)
-			try {
-				Thread.sleep(300);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-
-			// Reset each element's border after highlighting
-			js.executeScript("arguments[0].style.border = ''", element);
-		}
-		
+		highlight(elements, "2px solid green");
 	}
 
 	/**
@@ -96,19 +99,13 @@ public class SeleniumHighlighterUtility {
 	 * @param highlightStyle The CSS border style to use for highlighting.
 	 */
 	public void highlightElementsWithSpecifiedStyle(List<WebElement> elements, String highlightStyle) {
-		for (WebElement element : elements) {
-			// Execute JavaScript to highlight each element
-			js.executeScript("arguments[0].style.border = 'highlightStyle'", element);
-
-			// Sleep for a short while to see the highlight (optional)
-			try {
-				Thread.sleep(300);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		highlight(elements, highlightStyle);
+	}
 
-			// Reset each element's border after highlighting
-			js.executeScript("arguments[0].style.border = ''", element);
+	private void highlight(List<WebElement> elements, String highlightStyle) {
+		if (performanceMode || elements.isEmpty()) {
+			return;
 		}
+		js.executeScript(HIGHLIGHT_SCRIPT, elements, highlightStyle, HIGHLIGHT_MILLIS);
 	}
 }
@@ -0,0 +1,203 @@
+package common;
+
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Suite-wide cache of test data sheets shared by all test threads.
+ * <p>
+ * Each sheet is loaded once, through its {@link TestDataSnapshot}, and the immutable table is shared by every
+ * reader. Concurrent requests for a sheet that is still loading wait for that single load. When the estimated
+ * size of the cached tables exceeds the memory budget ("testdata.cache.maxBytes" system property, default
+ * 256 MB), the least recently used sheets are evicted and reloaded on their next use.
+ */
+public final class TestDataCache {
+
+    private static final TestDataCache INSTANCE = new TestDataCache(Long.getLong("testdata.cache.maxBytes", 256L << 20));
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long loadNanos = 0;
+
+    /**
+     * Constructor to initialize a cache with its own memory budget.
+     *
+     * @param maxBytes The estimated number of bytes the cached tables may use.
+     */
+    public TestDataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the cache shared by the whole suite.
+     *
+     * @return The suite-wide cache.
+     */
+    public static TestDataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a sheet, loading it on first use.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet.
+     * @return The shared table of the sheet.
+     */
+    public ExcelDataTable get(String filePath, String sheetName) {
+        Key key = new Key(filePath, sheetName);
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                misses++;
+                load = true;
+            } else {
+                hits++;
+            }
+        }
+        if (load) {
+            load(key, entry);
+        }
+        try {
+            return entry.table.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Load sheets ahead of their first use.
+     *
+     * @param filePath   The file path of the Excel file.
+     * @param sheetNames The names of the sheets to load.
+     */
+    public void preload(String filePath, String... sheetNames) {
+        for (String sheetName : sheetNames) {
+            get(filePath, sheetName);
+        }
+    }
+
+    /**
+     * Remove all cached sheets. Statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Get the share of requests served from the cache.
+     *
+     * @return The hit rate between 0 and 1.
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * Get the total time spent loading sheets.
+     *
+     * @return The load time in milliseconds.
+     */
+    public synchronized double getLoadMillis() {
+        return loadNanos / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TestDataCache[sheets=%d, used=%d KB, budget=%d KB, hits=%d, misses=%d, hitRate=%.1f%%, "
+                        + "evictions=%d, loadTime=%.1f ms]", entries.size(), usedBytes >> 10, maxBytes >> 10, hits, misses,
+                getHitRate() * 100, evictions, getLoadMillis());
+    }
+
+    private void load(Key key, Entry entry) {
+        long start = System.nanoTime();
+        try {
+            ExcelDataTable table = TestDataSnapshot.load(key.filePath, key.sheetName);
+            synchronized (this) {
+                loadNanos += System.nanoTime() - start;
+                if (entries.get(key) == entry) {
+                    entry.bytes = table.estimatedBytes();
+                    usedBytes += entry.bytes;
+                    evict(key);
+                }
+            }
+            entry.table.complete(table);
+        } catch (Throwable e) {
+            // Also for errors such as OutOfMemoryError, so threads waiting for the sheet do not hang
+            synchronized (this) {
+                loadNanos += System.nanoTime() - start;
+                entries.remove(key, entry);
+            }
+            entry.table.completeExceptionally(e);
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used, fully loaded sheets until the cache fits its budget again.
+     * The sheet that was just loaded is kept even if it exceeds the budget on its own.
+     */
+    private void evict(Key loaded) {
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Key, Entry> candidate = eldest.next();
+            if (!candidate.getKey().equals(loaded) && candidate.getValue().table.isDone()) {
+                usedBytes -= candidate.getValue().bytes;
+                evictions++;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<ExcelDataTable> table = new CompletableFuture<>();
+        private long bytes = 0;
+    }
+
+    private static final class Key {
+        private final String filePath;
+        private final String sheetName;
+
+        private Key(String filePath, String sheetName) {
+            this.filePath = Paths.get(filePath).toAbsolutePath().normalize().toString();
+            this.sheetName = sheetName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return filePath.equals(key.filePath) && sheetName.equals(key.sheetName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(filePath, sheetName);
+        }
+    }
+}
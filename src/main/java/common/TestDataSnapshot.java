@@ -0,0 +1,281 @@
+package common;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled binary snapshots of Excel sheets.
+ * <p>
+ * A sheet is parsed through POI once and saved as a compact snapshot named after a hash of the workbook path
+ * and sheet name and the SHA-256 hash of the Excel file's content. Later runs memory-map the snapshot instead of parsing the workbook, and parallel
+ * JVMs share the mapped pages read-only. When the Excel file changes its hash changes too, so the snapshot
+ * is rebuilt on the next load.
+ * <p>
+ * A snapshot that cannot be decoded, e.g. one truncated by an interrupted build, is deleted and compiled again.
+ * Snapshots are kept in the directory given by the "testdata.snapshot.dir" system property
+ * (default target/testdata-snapshots). Setting "testdata.snapshot" to false loads sheets directly.
+ */
+public final class TestDataSnapshot {
+
+    private static final int MAGIC = 0x58534E50;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".v" + VERSION + ".snap";
+
+    private TestDataSnapshot() {
+    }
+
+    /**
+     * Load a sheet from its snapshot, compiling the snapshot first if it is missing or out of date.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet to load.
+     * @return The table holding all data rows of the sheet.
+     */
+    public static ExcelDataTable load(String filePath, String sheetName) {
+        if (!Boolean.parseBoolean(System.getProperty("testdata.snapshot", "true"))) {
+            return ExcelDataTable.load(filePath, sheetName);
+        }
+        try {
+            Path snapshot = snapshotPath(filePath, sheetName);
+            if (!Files.exists(snapshot)) {
+                compile(filePath, sheetName, snapshot);
+            }
+            try {
+                return read(snapshot);
+            } catch (IOException e) {
+                System.out.println("Rebuilding test data snapshot " + snapshot + ": " + e.getMessage());
+                Files.deleteIfExists(snapshot);
+                compile(filePath, sheetName, snapshot);
+                return read(snapshot);
+            }
+        } catch (IOException e) {
+            System.out.println("Not able to use test data snapshot, reading Excel file instead: " + e.getMessage());
+            return ExcelDataTable.load(filePath, sheetName);
+        }
+    }
+
+    /**
+     * Compile the snapshot of a sheet unless an up-to-date snapshot exists already.
+     *
+     * @param filePath  The file path of the Excel file.
+     * @param sheetName The name of the sheet to compile.
+     * @return The path of the snapshot file.
+     * @throws IOException if the Excel file cannot be read or the snapshot cannot be written.
+     */
+    public static Path compile(String filePath, String sheetName) throws IOException {
+        Path snapshot = snapshotPath(filePath, sheetName);
+        if (!Files.exists(snapshot)) {
+            compile(filePath, sheetName, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build step entry point compiling the snapshots of the given sheets.
+     *
+     * @param args The file path of the Excel file followed by the names of the sheets to compile.
+     * @throws IOException if a snapshot cannot be compiled.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TestDataSnapshot <excel file> <sheet name>...");
+            return;
+        }
+        for (int i = 1; i < args.length; i++) {
+            System.out.println("Compiled " + compile(args[0], args[i]));
+        }
+    }
+
+    private static void compile(String filePath, String sheetName, Path snapshot) throws IOException {
+        ExcelDataTable table = ExcelDataTable.load(filePath, sheetName);
+        Files.createDirectories(snapshot.getParent());
+        Path tempFile = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            write(table, tempFile);
+            try {
+                Files.move(tempFile, snapshot, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshot, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Another JVM may have published the same snapshot in the meantime
+            Files.deleteIfExists(tempFile);
+            if (!Files.exists(snapshot)) {
+                throw e;
+            }
+        }
+        deleteOutdatedSnapshots(snapshot, filePath, sheetName);
+    }
+
+    /**
+     * Write a table in the snapshot format: magic number, version, headers, row count, distinct values,
+     * padding to a 4-byte boundary and the value indexes column by column.
+     */
+    private static void write(ExcelDataTable table, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(table.columnCount());
+            for (String header : table.getHeaders()) {
+                writeString(out, header);
+            }
+            out.writeInt(table.rowCount());
+            String[] values = table.values();
+            out.writeInt(values.length);
+            for (String value : values) {
+                writeString(out, value);
+            }
+            while (out.size() % Integer.BYTES != 0) {
+                out.writeByte(0);
+            }
+            for (int column = 0; column < table.columnCount(); column++) {
+                IntBuffer indexes = table.columnIndexes(column);
+                for (int row = 0; row < table.rowCount(); row++) {
+                    out.writeInt(indexes.get(row));
+                }
+            }
+        }
+    }
+
+    private static ExcelDataTable read(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Unsupported test data snapshot: " + file);
+        }
+        try {
+            int columnCount = readCount(buffer, Integer.BYTES);
+            List<String> headers = new ArrayList<>(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                headers.add(readString(buffer));
+            }
+            int rowCount = buffer.getInt();
+            String[] values = new String[readCount(buffer, Integer.BYTES)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readString(buffer);
+            }
+            buffer.position((buffer.position() + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES);
+            if (rowCount < 0 || (long) rowCount * Integer.BYTES * columnCount > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            IntBuffer[] columns = new IntBuffer[columnCount];
+            for (int column = 0; column < columnCount; column++) {
+                ByteBuffer slice = buffer.slice();
+                slice.limit(rowCount * Integer.BYTES);
+                columns[column] = slice.asIntBuffer();
+                buffer.position(buffer.position() + rowCount * Integer.BYTES);
+            }
+            return new ExcelDataTable(headers, values, columns, rowCount);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt test data snapshot " + file + ": " + e, e);
+        }
+    }
+
+    /**
+     * Read a count of entries taking at least the given number of bytes each, checked against the bytes left
+     * so a corrupt count cannot allocate more than the file holds.
+     */
+    private static int readCount(ByteBuffer buffer, int minBytesPerEntry) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / minBytesPerEntry) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readCount(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Path snapshotPath(String filePath, String sheetName) throws IOException {
+        Path directory = Paths.get(System.getProperty("testdata.snapshot.dir", "target/testdata-snapshots"));
+        return directory.resolve(snapshotPrefix(filePath, sheetName) + sha256(Paths.get(filePath)) + EXTENSION);
+    }
+
+    /**
+     * Name prefix shared by all snapshots of a sheet: a hash of the workbook path and the sheet name, so sheet
+     * names that differ only in characters not allowed in file names get their own snapshots.
+     */
+    private static String snapshotPrefix(String filePath, String sheetName) {
+        // Sheet names cannot contain "/", so the last one separates the sheet from the path
+        String sheet = Paths.get(filePath).toAbsolutePath().normalize() + "/" + sheetName;
+        return hex(newDigest().digest(sheet.getBytes(StandardCharsets.UTF_8))).substring(0, 32) + "-";
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Remove snapshots of the same sheet compiled from earlier versions of an Excel file. Snapshots still
+     * mapped by another process may not be deletable on every OS; they are left for a later run.
+     */
+    private static void deleteOutdatedSnapshots(Path current, String filePath, String sheetName) {
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(current.getParent(), snapshotPrefix(filePath, sheetName) + "*" + EXTENSION)) {
+            for (Path snapshot : snapshots) {
+                if (!snapshot.equals(current)) {
+                    try {
+                        Files.deleteIfExists(snapshot);
+                    } catch (IOException e) {
+                        // Still in use; removed by a later run
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Not able to clean up old test data snapshots: " + e.getMessage());
+        }
+    }
+}
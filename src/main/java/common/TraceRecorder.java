@@ -0,0 +1,226 @@
+package common;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.support.events.WebDriverListener;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records a timeline of the test run and writes it in the Chrome trace-event format, which Perfetto
+ * (ui.perfetto.dev) and chrome://tracing can open.
+ * <p>
+ * Spans are recorded for scenarios and steps ({@link CucumberTracePlugin}), for page actions
+ * ({@link ActionMetrics#end(String, By, long)}) and, as a WebDriver listener, for every raw WebDriver command.
+ * Each thread becomes its own track. Tracing is enabled with the "trace.enabled" system property; the trace
+ * is written to "trace.file" (default test-output/Trace/trace.json) and holds at most "trace.maxEvents"
+ * spans (default 1000000).
+ */
+public class TraceRecorder implements WebDriverListener {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("trace.enabled", "false"));
+    private static final int MAX_EVENTS = Integer.getInteger("trace.maxEvents", 1_000_000);
+
+    /**
+     * Calls that only return a local helper object or are made by the decorator itself.
+     */
+    private static final Set<String> IGNORED_CALLS = new HashSet<>(Arrays.asList(
+            "getWrappedDriver", "getWrappedElement", "toString", "hashCode", "equals"));
+
+    private static final ConcurrentLinkedQueue<Span> SPANS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger RECORDED = new AtomicInteger();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final Map<Long, String> THREAD_NAMES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Deque<long[]>> COMMAND_STARTS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    /**
+     * Checks whether tracing is enabled.
+     *
+     * @return true if the "trace.enabled" system property is true
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        if (ENABLED && !IGNORED_CALLS.contains(method.getName())) {
+            COMMAND_STARTS.get().push(new long[]{System.nanoTime()});
+        }
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        commandDone(method, args, false);
+    }
+
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        commandDone(method, args, true);
+    }
+
+    private static void commandDone(Method method, Object[] args, boolean failed) {
+        if (!ENABLED || IGNORED_CALLS.contains(method.getName())) {
+            return;
+        }
+        long[] start = COMMAND_STARTS.get().poll();
+        if (start == null) {
+            return;
+        }
+        String name = method.getName();
+        if (args != null && args.length > 0 && args[0] instanceof By) {
+            name = name + " " + args[0];
+        }
+        span(failed ? name + " (failed)" : name, "webdriver", start[0], System.nanoTime());
+    }
+
+    /**
+     * Records a finished span on the current thread's track.
+     *
+     * @param name        Name of the span
+     * @param category    Category of the span, e.g. scenario, step, action or webdriver
+     * @param startNanos  System.nanoTime() when the span started
+     * @param endNanos    System.nanoTime() when the span ended
+     */
+    public static void span(String name, String category, long startNanos, long endNanos) {
+        if (!ENABLED) {
+            return;
+        }
+        if (RECORDED.incrementAndGet() > MAX_EVENTS) {
+            DROPPED.increment();
+            return;
+        }
+        Thread thread = Thread.currentThread();
+        THREAD_NAMES.putIfAbsent(thread.getId(), thread.getName());
+        SPANS.add(new Span(name, category, thread.getId(), startNanos, endNanos));
+    }
+
+    /**
+     * Writes the recorded spans to the "trace.file" system property path.
+     */
+    public static void write() {
+        if (!ENABLED) {
+            return;
+        }
+        Path file = Paths.get(System.getProperty("trace.file", Paths.get("test-output", "Trace", "trace.json").toString()));
+        try {
+            write(file);
+            System.out.println("Trace with " + Math.min(RECORDED.get(), MAX_EVENTS) + " spans written to " + file.toAbsolutePath()
+                    + (DROPPED.sum() > 0 ? ", " + DROPPED.sum() + " spans dropped" : ""));
+        } catch (IOException e) {
+            System.out.println("Exception while writing the trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the recorded spans as a Chrome trace-event JSON file.
+     *
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static synchronized void write(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "trace", ".tmp");
+        List<Span> spans = new ArrayList<>(SPANS);
+        long origin = Long.MAX_VALUE;
+        for (Span span : spans) {
+            origin = Math.min(origin, span.startNanos);
+        }
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+            out.write("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"test run\"}}");
+            for (Map.Entry<Long, String> thread : THREAD_NAMES.entrySet()) {
+                out.write(",\n{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":" + thread.getKey()
+                        + ",\"args\":{\"name\":\"" + escape(thread.getValue()) + "\"}}");
+            }
+            for (Span span : spans) {
+                out.write(",\n{\"ph\":\"X\",\"name\":\"");
+                out.write(escape(span.name));
+                out.write("\",\"cat\":\"" + span.category + "\",\"pid\":1,\"tid\":" + span.threadId
+                        + ",\"ts\":" + micros(span.startNanos - origin)
+                        + ",\"dur\":" + micros(Math.max(0, span.endNanos - span.startNanos)) + "}");
+            }
+            out.write("\n]}\n");
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String micros(long nanos) {
+        return (nanos / 1000) + "." + String.format(Locale.ROOT, "%03d", nanos % 1000);
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * A finished span of one thread.
+     */
+    private static final class Span {
+        private final String name;
+        private final String category;
+        private final long threadId;
+        private final long startNanos;
+        private final long endNanos;
+
+        private Span(String name, String category, long threadId, long startNanos, long endNanos) {
+            this.name = name;
+            this.category = category;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+    }
+}
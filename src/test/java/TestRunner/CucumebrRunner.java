@@ -1,9 +1,17 @@
 package TestRunner;
 
+import base.BaseTest;
+import common.ScenarioTimings;
 import io.cucumber.testng.AbstractTestNGCucumberTests;
 import io.cucumber.testng.CucumberOptions;
+import io.cucumber.testng.Pickle;
+import io.cucumber.testng.PickleWrapper;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.DataProvider;
 
+import java.util.Arrays;
+import java.util.List;
+
 
 
 /**
@@ -18,10 +26,13 @@ import org.testng.annotations.DataProvider;
                 //Path of the featrure files
         },
         glue = {
-                "StepDefinations" // Package where step definitions are located
+                "StepDefinations", // Package where step definitions are located
+                "Hooks" // Package where the Cucumber hooks are located
         },
         plugin = {
                 "com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter:",
+                "common.CucumberTracePlugin", // Records scenario and step spans when trace.enabled is set
+                "common.ScenarioTimingsPlugin", // Records scenario durations for ordering and sharding
                 "pretty","html:test-output/CucumberReports/htmlReport.html", // Generates HTML report
                 "pretty","json:test-output/CucumberReports/JsonReport.json"
         },
@@ -33,9 +44,32 @@ import org.testng.annotations.DataProvider;
 // Extends AbstractTestNGCucumberTests to run Cucumber tests with TestNG
 public class CucumebrRunner extends AbstractTestNGCucumberTests {
 
+    /**
+     * Runs the scenarios in parallel. Each worker thread registers its own browser in the
+     * driver registry; the thread count is TestNG's "dataproviderthreadcount", set through
+     * the "parallel.threads" property of the build (e.g. -Dparallel.threads=16).
+     * <p>
+     * Only the scenarios of the shard selected by "shard.index" and "shard.count" are run,
+     * longest first according to the {@link ScenarioTimings} of earlier runs.
+     */
     @Override
-    @DataProvider(parallel = false)
+    @DataProvider(parallel = true)
     public Object[][] scenarios() {
-        return super.scenarios();
+        List<Object[]> scenarios = ScenarioTimings.fromSystemProperties().schedule(Arrays.asList(super.scenarios()), scenario -> {
+            Pickle pickle = ((PickleWrapper) scenario[0]).getPickle();
+            return ScenarioTimings.key(pickle.getUri().toString(), pickle.getLine());
+        });
+        return scenarios.toArray(new Object[0][]);
+    }
+
+    /**
+     * Finishes the run, which writes the reports and the scenario durations of this run (see
+     * {@link common.ScenarioTimingsPlugin}), and publishes the suite summaries.
+     */
+    @Override
+    @AfterClass(alwaysRun = true)
+    public void tearDownClass() {
+        super.tearDownClass();
+        BaseTest.finishSuite();
     }
 }
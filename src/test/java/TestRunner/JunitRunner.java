@@ -1,10 +1,14 @@
 package TestRunner;
 
 
+import base.BaseTest;
+import common.ScenarioTimings;
 import io.cucumber.junit.Cucumber;
 import io.cucumber.junit.CucumberOptions;
+import org.junit.AfterClass;
 import org.junit.runner.RunWith;
 
+
 @RunWith(Cucumber.class)
 @CucumberOptions(
         tags = "", // Define the tags to be executed (if any)
@@ -12,15 +16,28 @@ import org.junit.runner.RunWith;
                 //Path of the featrure files
         },
         glue = {
-                "StepDefinations" // Package where step definitions are located
+                "StepDefinations", // Package where step definitions are located
+                "Hooks" // Package where the Cucumber hooks are located
         },
         monochrome = true, // Makes console output more readable
         publish = true,
         plugin = {
                 "com.aventstack.extentreports.cucumber.adapter.ExtentCucumberAdapter:",
+                "common.CucumberTracePlugin", // Records scenario and step spans when trace.enabled is set
+                "common.ScenarioTimingsPlugin", // Records scenario durations for ordering and sharding
                 "pretty","html:test-output/CucumberReports/htmlReport.html", // Generates HTML report
                 "pretty","json:test-output/CucumberReports/JsonReport.json"
         }
 )
 public class JunitRunner {
+
+    /**
+     * Publishes the suite summaries once the run finished. The JUnit runner runs the features in
+     * file order and only records their durations in the {@link ScenarioTimings}; duration ordering
+     * and sharding are done by {@link CucumebrRunner}.
+     */
+    @AfterClass
+    public static void finishRun() {
+        BaseTest.finishSuite();
+    }
 }